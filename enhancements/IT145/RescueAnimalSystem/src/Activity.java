@@ -1,4 +1,6 @@
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 
 public class Activity {
@@ -21,6 +23,14 @@ public class Activity {
         this.timestamp = LocalDateTime.now();
     }
     
+    // Constructor for activities loaded from storage with their original time
+    public Activity(String animalName, String animalType, String activityType, 
+                   String description, String location, String performedBy,
+                   LocalDateTime timestamp) {
+        this(animalName, animalType, activityType, description, location, performedBy);
+        this.timestamp = timestamp;
+    }
+    
     // Getters
     public String getAnimalName() { return animalName; }
     public String getAnimalType() { return animalType; }
@@ -30,6 +40,14 @@ public class Activity {
     public LocalDateTime getTimestamp() { return timestamp; }
     public String getPerformedBy() { return performedBy; }
     
+    public long getEpochMillis() {
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+    
+    public static LocalDateTime fromEpochMillis(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+    
     @Override
     public String toString() {
         return String.format("[%s] %s %s - %s at %s (by %s)", 
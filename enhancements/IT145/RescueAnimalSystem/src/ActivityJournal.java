@@ -0,0 +1,128 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Append-only journal for activity records.
+ * Keeps one channel open on the activity file and writes each new record
+ * to the end of it, so logging cost stays constant as the history grows.
+ */
+public class ActivityJournal implements Closeable {
+
+    /**
+     * When appended records are forced to the storage device
+     * NONE leaves it to the operating system, PER_WRITE forces every append,
+     * PERIODIC forces outstanding appends on a fixed interval
+     */
+    public enum DurabilityPolicy {
+        NONE,
+        PER_WRITE,
+        PERIODIC
+    }
+
+    private final Path path;
+    private final DurabilityPolicy policy;
+    private final FileChannel channel;
+    private Timer syncTimer;
+    private boolean unsynced = false;
+
+    public ActivityJournal(Path path, DurabilityPolicy policy, long syncIntervalMillis) throws IOException {
+        this.path = path;
+        this.policy = policy;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                       StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        terminateTrailingLine();
+
+        if (policy == DurabilityPolicy.PERIODIC) {
+            startSyncTask(syncIntervalMillis);
+        }
+    }
+
+    /**
+     * Append a single record to the end of the journal
+     * Returns the number of bytes written, including the line terminator
+     */
+    public synchronized int append(String record) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        if (policy == DurabilityPolicy.PER_WRITE) {
+            channel.force(false);
+        } else {
+            unsynced = true;
+        }
+        return length;
+    }
+
+    /**
+     * Force any appended records that have not reached the device yet
+     * Returns false if there was nothing to force
+     */
+    public synchronized boolean sync() throws IOException {
+        if (unsynced && channel.isOpen()) {
+            channel.force(false);
+            unsynced = false;
+            return true;
+        }
+        return false;
+    }
+
+    public DurabilityPolicy getPolicy() {
+        return policy;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (syncTimer != null) {
+            syncTimer.cancel();
+        }
+        if (channel.isOpen()) {
+            sync();
+            channel.close();
+        }
+    }
+
+    // A hand-edited file may not end with a newline; start appends on a fresh line
+    private void terminateTrailingLine() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            return;
+        }
+
+        try (FileChannel reader = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            reader.read(last, size - 1);
+            if (last.get(0) != '\n') {
+                channel.write(ByteBuffer.wrap(new byte[] {'\n'}));
+            }
+        }
+    }
+
+    private void startSyncTask(long intervalMillis) {
+        syncTimer = new Timer("activity-journal-sync", true); // Daemon thread
+        syncTimer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    sync();
+                } catch (IOException e) {
+                    System.err.println("Error syncing activity journal: " + e.getMessage());
+                }
+            }
+        }, intervalMillis, intervalMillis);
+    }
+}
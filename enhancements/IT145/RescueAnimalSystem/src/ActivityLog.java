@@ -0,0 +1,454 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Activity history kept on disk instead of on the heap.
+ * Records are appended through an ActivityJournal and read back through
+ * memory-mapped regions of the same file. An off-heap index holds the
+ * offset, length and time of every record, so the Nth record is found in
+ * constant time and only the records a query returns become objects.
+ */
+public class ActivityLog implements Closeable {
+    // Files are mapped in regions; each region overlaps the next so a record
+    // that starts near the end of one region can still be read from it
+    private static final long REGION_SIZE = 256L * 1024 * 1024;
+    private static final int REGION_OVERLAP = 64 * 1024;
+
+    // Index entry: record offset, record length, record time, latest time so far
+    private static final int ENTRY_BYTES = 28;
+    private static final int LENGTH_FIELD = 8;
+    private static final int TIME_FIELD = 12;
+    private static final int MAX_TIME_FIELD = 20;
+    private static final int INITIAL_ENTRIES = 1024;
+    private static final int MAX_ENTRIES = Integer.MAX_VALUE / ENTRY_BYTES;
+
+    private final Path path;
+    private final ActivityJournal.DurabilityPolicy policy;
+    private final long syncIntervalMillis;
+    private ActivityJournal journal;
+    private FileChannel reader;
+    private MappedByteBuffer[] regions = new MappedByteBuffer[0];
+
+    private ByteBuffer index = ByteBuffer.allocateDirect(INITIAL_ENTRIES * ENTRY_BYTES);
+    private int count = 0;
+    private long writePosition = 0;
+    private long latestTime = Long.MIN_VALUE;
+    // Set once an activity is appended with a time earlier than one already in the log
+    private boolean outOfOrder = false;
+
+    public ActivityLog(Path path, ActivityJournal.DurabilityPolicy policy, long syncIntervalMillis) throws IOException {
+        this.path = path;
+        this.policy = policy;
+        this.syncIntervalMillis = syncIntervalMillis;
+
+        // Older records were written without a time; the file's last write is the best estimate
+        long legacyTime = Files.exists(path) ? Files.getLastModifiedTime(path).toMillis()
+                                             : System.currentTimeMillis();
+        open();
+        if (!buildIndex(legacyTime)) {
+            // Persist the time estimate and drop damaged records once, rather than on every start
+            closeFiles();
+            rewriteLegacyRecords(legacyTime);
+            open();
+            buildIndex(legacyTime);
+        }
+    }
+
+    /**
+     * Append an activity to the end of the log
+     */
+    public synchronized void append(Activity activity) throws IOException {
+        long time = activity.getEpochMillis();
+        // Index only the record; the line also holds the newline and checksum suffix
+        int length = journal.append(RecordChecksum.seal(encode(activity))) - 1 - RecordChecksum.SUFFIX_BYTES;
+        addEntry(writePosition, length, time);
+        writePosition += length + RecordChecksum.SUFFIX_BYTES + 1;
+    }
+
+    /**
+     * Force appended records that have not reached the device yet
+     * Returns false if there was nothing to force
+     */
+    public boolean sync() throws IOException {
+        return journal.sync();
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * The Nth activity in the order it was logged
+     */
+    public Activity get(int n) throws IOException {
+        View view = view();
+        if (n < 0 || n >= view.count) {
+            throw new IndexOutOfBoundsException("Activity " + n + " of " + view.count);
+        }
+        return read(view.index, n);
+    }
+
+    /**
+     * Visit every activity, oldest first
+     */
+    public void forEach(Consumer<Activity> action) throws IOException {
+        View view = view();
+        for (int n = 0; n < view.count; n++) {
+            action.accept(read(view.index, n));
+        }
+    }
+
+    /**
+     * Activities accepted by the filter, newest first
+     */
+    public List<Activity> find(Predicate<Activity> filter) throws IOException {
+        return collectNewestFirst(view(), Long.MIN_VALUE, filter);
+    }
+
+    /**
+     * Activities strictly after the given time and accepted by the filter, newest first
+     */
+    public List<Activity> find(long after, Predicate<Activity> filter) throws IOException {
+        return collectNewestFirst(view(), after, filter);
+    }
+
+    /**
+     * Activities strictly after the given time, newest first
+     * The running latest time in the index is never decreasing, so the start
+     * of the range is found by binary search and older records are not read
+     */
+    public List<Activity> newestAfter(long epochMillis) throws IOException {
+        return collectNewestFirst(view(), epochMillis, activity -> true);
+    }
+
+    /**
+     * All activities, oldest first
+     */
+    public List<Activity> toList() throws IOException {
+        List<Activity> result = new ArrayList<>();
+        forEach(result::add);
+        return result;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeFiles();
+    }
+
+    // Record format: name|type|activityType|description|location|performedBy|epochMillis
+    static String encode(Activity activity) {
+        return activity.getAnimalName() + "|" +
+               activity.getAnimalType() + "|" +
+               activity.getActivityType() + "|" +
+               activity.getDescription() + "|" +
+               activity.getLocation() + "|" +
+               activity.getPerformedBy() + "|" +
+               activity.getEpochMillis();
+    }
+
+    /**
+     * Parse a record line, or return null if it is not a timed activity record
+     * or fails its checksum
+     */
+    static Activity decode(String line) {
+        line = RecordChecksum.unseal(line);
+        if (line == null) {
+            return null;
+        }
+        String[] parts = line.split("\\|");
+        if (parts.length < 7) {
+            return null;
+        }
+        try {
+            return decode(line, Long.parseLong(parts[6]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Activity decode(String line, long time) {
+        String[] parts = line.split("\\|");
+        return new Activity(parts[0], parts[1], parts[2], parts[3], parts[4], parts[5],
+                            Activity.fromEpochMillis(time));
+    }
+
+    // The entries and count a reader works from; entries below count never change
+    private static class View {
+        final ByteBuffer index;
+        final int count;
+        final boolean outOfOrder;
+
+        View(ByteBuffer index, int count, boolean outOfOrder) {
+            this.index = index;
+            this.count = count;
+            this.outOfOrder = outOfOrder;
+        }
+    }
+
+    private synchronized View view() {
+        return new View(index, count, outOfOrder);
+    }
+
+    private List<Activity> collectNewestFirst(View view, long after, Predicate<Activity> filter) throws IOException {
+        int start = firstIndexAfter(view, after);
+        List<Activity> result = new ArrayList<>();
+        for (int n = view.count - 1; n >= start; n--) {
+            if (view.index.getLong(n * ENTRY_BYTES + TIME_FIELD) <= after) {
+                continue;
+            }
+            Activity activity = read(view.index, n);
+            if (filter.test(activity)) {
+                result.add(activity);
+            }
+        }
+        if (view.outOfOrder) {
+            // Stable, so records with the same time stay newest logged first
+            result.sort(Comparator.comparingLong(Activity::getEpochMillis).reversed());
+        }
+        return result;
+    }
+
+    // Index of the first entry whose running latest time is greater than the given time
+    private static int firstIndexAfter(View view, long time) {
+        int low = 0;
+        int high = view.count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (view.index.getLong(mid * ENTRY_BYTES + MAX_TIME_FIELD) <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private Activity read(ByteBuffer entries, int n) throws IOException {
+        int entry = n * ENTRY_BYTES;
+        long offset = entries.getLong(entry);
+        int length = entries.getInt(entry + LENGTH_FIELD);
+        long time = entries.getLong(entry + TIME_FIELD);
+        return decode(new String(readBytes(offset, length), StandardCharsets.UTF_8), time);
+    }
+
+    private byte[] readBytes(long offset, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        int region = (int) (offset / REGION_SIZE);
+        long regionOffset = offset - region * REGION_SIZE;
+        if (regionOffset + length > REGION_SIZE + REGION_OVERLAP) {
+            // Longer than the overlap; read it directly
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (reader.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Activity log truncated at " + offset);
+                }
+            }
+            return bytes;
+        }
+        mappedRegion(region, regionOffset + length).get((int) regionOffset, bytes);
+        return bytes;
+    }
+
+    /**
+     * The mapping for a region, covering at least the given number of bytes
+     * The last region is remapped lazily as appends grow the file
+     */
+    private synchronized MappedByteBuffer mappedRegion(int region, long needed) throws IOException {
+        if (region >= regions.length) {
+            MappedByteBuffer[] grown = new MappedByteBuffer[region + 1];
+            System.arraycopy(regions, 0, grown, 0, regions.length);
+            regions = grown;
+        }
+        MappedByteBuffer mapping = regions[region];
+        if (mapping == null || mapping.capacity() < needed) {
+            long start = region * REGION_SIZE;
+            long length = Math.min(reader.size() - start, REGION_SIZE + REGION_OVERLAP);
+            mapping = reader.map(FileChannel.MapMode.READ_ONLY, start, length);
+            regions[region] = mapping;
+        }
+        return mapping;
+    }
+
+    private void addEntry(long offset, int length, long time) throws IOException {
+        if (count == MAX_ENTRIES) {
+            throw new IOException("Activity index is full");
+        }
+        if ((count + 1) * ENTRY_BYTES > index.capacity()) {
+            int entries = (int) Math.min((long) count * 2, MAX_ENTRIES);
+            ByteBuffer grown = ByteBuffer.allocateDirect(entries * ENTRY_BYTES);
+            grown.put(index.duplicate().clear().limit(count * ENTRY_BYTES));
+            index = grown;
+        }
+        if (time < latestTime) {
+            outOfOrder = true;
+        }
+        latestTime = Math.max(latestTime, time);
+
+        int entry = count * ENTRY_BYTES;
+        index.putLong(entry, offset);
+        index.putInt(entry + LENGTH_FIELD, length);
+        index.putLong(entry + TIME_FIELD, time);
+        index.putLong(entry + MAX_TIME_FIELD, latestTime);
+        count++;
+    }
+
+    /**
+     * Scan the file through the mapping and index every record
+     * Returns false if the file needs rewriting: records without a valid time
+     * were found, or records that failed their checksum were quarantined
+     */
+    private boolean buildIndex(long legacyTime) throws IOException {
+        long size = reader.size();
+        boolean clean = true;
+        boolean sawSealed = false;
+
+        long recordStart = 0;
+        long lastTab = -1;
+        int separators = 0;
+        long time = 0;
+        int digits = 0;
+        boolean validTime = true;
+        boolean timeEnded = false;
+        for (int region = 0; (long) region * REGION_SIZE < size; region++) {
+            long base = region * REGION_SIZE;
+            MappedByteBuffer mapping = mappedRegion(region, 0);
+            int end = (int) Math.min(REGION_SIZE, size - base);
+            for (int i = 0; i < end; i++) {
+                byte b = mapping.get(i);
+                if (b == '\n') {
+                    long position = base + i;
+                    int length = (int) (position - recordStart);
+                    boolean sealed = lastTab == position - RecordChecksum.SUFFIX_BYTES;
+                    if (sealed) {
+                        length -= RecordChecksum.SUFFIX_BYTES;
+                        sealed = verify(recordStart, length);
+                        sawSealed = true;
+                    }
+                    if (separators >= 5 && (sealed || !sawSealed)) {
+                        // Six fields is a record from before times were stored
+                        if (separators == 5 || !validTime || digits == 0) {
+                            clean = false;
+                            time = legacyTime;
+                        }
+                        addEntry(recordStart, length, time);
+                    } else if (length > 0) {
+                        // Failed its checksum, or a bare line after checksummed ones: a torn write
+                        RecordChecksum.quarantine(path, new String(readBytes(recordStart, (int) (position - recordStart)),
+                                                                   StandardCharsets.UTF_8));
+                        clean = false;
+                    }
+                    recordStart = position + 1;
+                    lastTab = -1;
+                    separators = 0;
+                    time = 0;
+                    digits = 0;
+                    validTime = true;
+                    timeEnded = false;
+                } else if (b == '|') {
+                    separators++;
+                } else if (b == '\t') {
+                    lastTab = base + i;
+                    timeEnded = separators == 6;
+                } else if (separators == 6 && !timeEnded) {
+                    if (b >= '0' && b <= '9') {
+                        time = time * 10 + (b - '0');
+                        digits++;
+                    } else {
+                        validTime = false;
+                    }
+                }
+            }
+        }
+
+        writePosition = recordStart;
+        return clean;
+    }
+
+    // Whether the record at the offset matches the checksum that follows it
+    private boolean verify(long offset, int length) throws IOException {
+        byte[] line = readBytes(offset, length + RecordChecksum.SUFFIX_BYTES);
+        long expected = 0;
+        for (int i = length + 1; i < line.length; i++) {
+            int digit = Character.digit(line[i], 16);
+            if (digit < 0) {
+                return false;
+            }
+            expected = (expected << 4) | digit;
+        }
+        return expected == RecordChecksum.checksum(line, 0, length);
+    }
+
+    /**
+     * Rewrite the file with every record sealed and timed
+     * Records without a valid time get the legacy estimate; damaged records,
+     * already quarantined by the scan, are left out. The file is replaced atomically.
+     */
+    private void rewriteLegacyRecords(long legacyTime) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+             BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            String line;
+            boolean sawSealed = false;
+            while ((line = in.readLine()) != null) {
+                boolean sealed = RecordChecksum.isSealed(line);
+                String record = sealed ? RecordChecksum.unseal(line) : (sawSealed ? null : line);
+                sawSealed |= sealed;
+                if (record == null) {
+                    continue;
+                }
+                String[] parts = record.split("\\|", -1);
+                if (parts.length < 6) {
+                    continue;
+                }
+                if (parts.length == 6) {
+                    record = record + "|" + legacyTime;
+                } else if (parts.length >= 7 && !parts[6].matches("\\d+")) {
+                    parts[6] = String.valueOf(legacyTime);
+                    record = String.join("|", parts);
+                }
+                out.write(RecordChecksum.seal(record));
+                out.newLine();
+            }
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void open() throws IOException {
+        // The journal creates the file and terminates a torn last line before it is indexed
+        journal = new ActivityJournal(path, policy, syncIntervalMillis);
+        reader = FileChannel.open(path, StandardOpenOption.READ);
+        regions = new MappedByteBuffer[0];
+        index.clear();
+        count = 0;
+        latestTime = Long.MIN_VALUE;
+        outOfOrder = false;
+    }
+
+    private void closeFiles() throws IOException {
+        journal.close();
+        reader.close();
+        regions = new MappedByteBuffer[0];
+    }
+}
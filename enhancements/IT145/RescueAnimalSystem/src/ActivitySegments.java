@@ -0,0 +1,613 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Activity history split into one segment per day.
+ * Today's segment is an ActivityLog; earlier days are sealed, gzip-compressed
+ * in the background and described by a small metadata file (time bounds,
+ * activity types, performers). Queries skip every segment whose metadata
+ * shows it cannot match, and segments older than the retention period are
+ * deleted or moved to an archive directory.
+ */
+public class ActivitySegments implements Closeable {
+    private static final String PLAIN_SUFFIX = ".log";
+    private static final String COMPRESSED_SUFFIX = ".log.gz";
+    private static final String META_SUFFIX = ".meta";
+    private static final String MIGRATION_SUFFIX = ".migrating";
+    private static final String MIGRATION_MARKER = "legacy-migration.done";
+    private static final long MAINTENANCE_INTERVAL_MS = 60 * 60 * 1000;
+
+    /**
+     * What happens to segments older than the retention period
+     */
+    public enum RetentionAction {
+        DELETE,
+        ARCHIVE
+    }
+
+    /**
+     * Summary of one segment, used to prune queries without reading records
+     */
+    public static class SegmentInfo {
+        private long minTime = Long.MAX_VALUE;
+        private long maxTime = Long.MIN_VALUE;
+        private int count = 0;
+        private final Set<String> types = new HashSet<>();
+        private final Set<String> performers = new HashSet<>();
+
+        synchronized void add(Activity activity) {
+            long time = activity.getEpochMillis();
+            minTime = Math.min(minTime, time);
+            maxTime = Math.max(maxTime, time);
+            count++;
+            types.add(activity.getActivityType().toLowerCase(Locale.ROOT));
+            performers.add(activity.getPerformedBy().toLowerCase(Locale.ROOT));
+        }
+
+        public synchronized long getMinTime() { return minTime; }
+        public synchronized long getMaxTime() { return maxTime; }
+        public synchronized int getCount() { return count; }
+
+        public synchronized boolean endsAfter(long epochMillis) {
+            return count > 0 && maxTime > epochMillis;
+        }
+
+        public synchronized boolean hasType(String activityType) {
+            return types.contains(activityType.toLowerCase(Locale.ROOT));
+        }
+
+        public synchronized boolean hasPerformer(String performedBy) {
+            return performers.contains(performedBy.toLowerCase(Locale.ROOT));
+        }
+
+        synchronized void store(Path file) throws IOException {
+            Properties properties = new Properties();
+            properties.setProperty("min", String.valueOf(minTime));
+            properties.setProperty("max", String.valueOf(maxTime));
+            properties.setProperty("count", String.valueOf(count));
+            properties.setProperty("types", String.join("|", types));
+            properties.setProperty("performers", String.join("|", performers));
+            try (OutputStream out = Files.newOutputStream(file)) {
+                properties.store(out, "Activity segment summary");
+            }
+        }
+
+        static SegmentInfo load(Path file) throws IOException {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+            SegmentInfo info = new SegmentInfo();
+            try {
+                info.minTime = Long.parseLong(properties.getProperty("min"));
+                info.maxTime = Long.parseLong(properties.getProperty("max"));
+                info.count = Integer.parseInt(properties.getProperty("count"));
+            } catch (NumberFormatException | NullPointerException e) {
+                throw new IOException("Invalid segment summary " + file);
+            }
+            splitInto(properties.getProperty("types", ""), info.types);
+            splitInto(properties.getProperty("performers", ""), info.performers);
+            return info;
+        }
+
+        private static void splitInto(String joined, Set<String> values) {
+            for (String value : joined.split("\\|")) {
+                if (!value.isEmpty()) {
+                    values.add(value);
+                }
+            }
+        }
+    }
+
+    private static class Segment {
+        final LocalDate day;
+        final SegmentInfo info;
+        // Open only while this is today's segment
+        volatile ActivityLog log;
+
+        Segment(LocalDate day, SegmentInfo info, ActivityLog log) {
+            this.day = day;
+            this.info = info;
+            this.log = log;
+        }
+    }
+
+    private final Path directory;
+    private final Path archiveDirectory;
+    private final ActivityJournal.DurabilityPolicy policy;
+    private final long syncIntervalMillis;
+    private int retentionDays;
+    private RetentionAction retentionAction;
+
+    private final TreeMap<LocalDate, Segment> segments = new TreeMap<>();
+    private Segment active;
+    private Timer maintenanceTimer;
+    // Changes whenever the set of stored activities does
+    private long version;
+
+    /**
+     * Open the segment directory, first splitting a legacy single-file log into segments
+     * A retentionDays of zero or less keeps every segment
+     */
+    public ActivitySegments(Path directory, Path legacyFile, ActivityJournal.DurabilityPolicy policy,
+                            long syncIntervalMillis, int retentionDays,
+                            RetentionAction retentionAction) throws IOException {
+        this.directory = directory;
+        this.archiveDirectory = directory.resolve("archive");
+        this.policy = policy;
+        this.syncIntervalMillis = syncIntervalMillis;
+        this.retentionDays = retentionDays;
+        this.retentionAction = retentionAction;
+
+        Files.createDirectories(directory);
+        migrateLegacyFile(legacyFile);
+
+        LocalDate today = LocalDate.now();
+        for (LocalDate day : listSegmentDays()) {
+            if (!day.equals(today)) {
+                segments.put(day, new Segment(day, loadInfo(day), null));
+            }
+        }
+        openActive(today);
+
+        startMaintenanceTask();
+    }
+
+    /**
+     * Append an activity to today's segment, sealing yesterday's first if the day has changed
+     */
+    public synchronized void append(Activity activity) throws IOException {
+        rollOverIfNeeded();
+        active.log.append(activity);
+        active.info.add(activity);
+        version++;
+    }
+    
+    /**
+     * Increases on every append and every retention pass that removes segments
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Force appended records that have not reached the device yet
+     * Returns false if there was nothing to force
+     */
+    public synchronized boolean sync() throws IOException {
+        return active.log.sync();
+    }
+
+    public synchronized int size() {
+        int total = 0;
+        for (Segment segment : segments.values()) {
+            total += segment.info.getCount();
+        }
+        return total;
+    }
+
+    public synchronized void setRetention(int retentionDays, RetentionAction retentionAction) {
+        this.retentionDays = retentionDays;
+        this.retentionAction = retentionAction;
+    }
+
+    /**
+     * Activities strictly after the given time and accepted by the filter, newest first
+     * Segments that end before the time, or that segmentFilter rejects from
+     * their summary, are skipped without reading a single record
+     */
+    public List<Activity> find(long after, Predicate<SegmentInfo> segmentFilter,
+                               Predicate<Activity> filter) throws IOException {
+        List<Activity> result = new ArrayList<>();
+        long previousMin = Long.MAX_VALUE;
+        boolean overlapping = false;
+        for (Segment segment : snapshotNewestFirst()) {
+            if (!segment.info.endsAfter(after) || !segmentFilter.test(segment.info)) {
+                continue;
+            }
+            // A late-logged activity can place a segment's records among the next one's
+            if (segment.info.getMaxTime() > previousMin) {
+                overlapping = true;
+            }
+            previousMin = Math.min(previousMin, segment.info.getMinTime());
+            result.addAll(readNewestFirst(segment, after, filter));
+        }
+        if (overlapping) {
+            result.sort(Comparator.comparingLong(Activity::getEpochMillis).reversed());
+        }
+        return result;
+    }
+
+    /**
+     * Visit every activity, oldest segment first
+     */
+    public void forEach(Consumer<Activity> action) throws IOException {
+        List<Segment> snapshot = snapshotNewestFirst();
+        Collections.reverse(snapshot);
+        for (Segment segment : snapshot) {
+            ActivityLog log = segment.log;
+            AtomicInteger delivered = new AtomicInteger();
+            if (log != null) {
+                try {
+                    log.forEach(activity -> {
+                        action.accept(activity);
+                        delivered.incrementAndGet();
+                    });
+                    continue;
+                } catch (ClosedChannelException e) {
+                    // Sealed while we were reading; the file has the same records in the same order
+                }
+            }
+            // Carry on from the file without repeating what the open log already delivered
+            AtomicInteger skipped = new AtomicInteger();
+            readFile(segment.day, activity -> {
+                if (skipped.getAndIncrement() >= delivered.get()) {
+                    action.accept(activity);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (maintenanceTimer != null) {
+            maintenanceTimer.cancel();
+        }
+        synchronized (this) {
+            active.log.close();
+        }
+    }
+
+    private synchronized List<Segment> snapshotNewestFirst() {
+        return new ArrayList<>(segments.descendingMap().values());
+    }
+
+    private List<Activity> readNewestFirst(Segment segment, long after, Predicate<Activity> filter) throws IOException {
+        ActivityLog log = segment.log;
+        if (log != null) {
+            try {
+                return log.find(after, filter);
+            } catch (ClosedChannelException e) {
+                // Sealed while we were reading; fall through to the file
+            }
+        }
+
+        List<Activity> matches = new ArrayList<>();
+        readFile(segment.day, activity -> {
+            if (activity.getEpochMillis() > after && filter.test(activity)) {
+                matches.add(activity);
+            }
+        });
+        Collections.reverse(matches);
+        matches.sort(Comparator.comparingLong(Activity::getEpochMillis).reversed());
+        return matches;
+    }
+
+    // Stream a sealed segment, compressed or not
+    private void readFile(LocalDate day, Consumer<Activity> action) throws IOException {
+        try {
+            InputStream in = openSealed(day);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Activity activity = ActivityLog.decode(line);
+                    if (activity != null) {
+                        action.accept(activity);
+                    }
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // Removed by retention after the query started
+        }
+    }
+
+    private InputStream openSealed(LocalDate day) throws IOException {
+        Path compressed = compressedPath(day);
+        if (!Files.exists(compressed)) {
+            try {
+                return Files.newInputStream(plainPath(day));
+            } catch (NoSuchFileException e) {
+                // Compressed and deleted since we looked; the gzip file is in place by now
+            }
+        }
+        return new GZIPInputStream(Files.newInputStream(compressed));
+    }
+
+    private void openActive(LocalDate day) throws IOException {
+        ActivityLog log = new ActivityLog(plainPath(day), policy, syncIntervalMillis);
+        SegmentInfo info = new SegmentInfo();
+        log.forEach(info::add);
+        active = new Segment(day, info, log);
+        segments.put(day, active);
+    }
+
+    private synchronized void rollOverIfNeeded() throws IOException {
+        LocalDate today = LocalDate.now();
+        if (today.equals(active.day)) {
+            return;
+        }
+
+        Segment sealed = active;
+        sealed.log.close();
+        sealed.log = null;
+        sealed.info.store(metaPath(sealed.day));
+        openActive(today);
+
+        // Compress the sealed segment now rather than at the next hourly run
+        if (maintenanceTimer != null) {
+            maintenanceTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    runMaintenance();
+                }
+            }, 0);
+        }
+    }
+
+    private void startMaintenanceTask() {
+        maintenanceTimer = new Timer("activity-segment-maintenance", true); // Daemon thread
+        maintenanceTimer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                runMaintenance();
+            }
+        }, 0, MAINTENANCE_INTERVAL_MS);
+    }
+
+    private void runMaintenance() {
+        try {
+            rollOverIfNeeded();
+            compressSealedSegments();
+            applyRetention();
+        } catch (IOException e) {
+            System.err.println("Error maintaining activity segments: " + e.getMessage());
+        }
+    }
+
+    private void compressSealedSegments() throws IOException {
+        for (Segment segment : snapshotNewestFirst()) {
+            Path plain = plainPath(segment.day);
+            if (segment.log != null || !Files.exists(plain)) {
+                continue;
+            }
+
+            // Records are verified on the way into the cold file, so damage is quarantined once
+            Path compressed = compressedPath(segment.day);
+            Path temp = directory.resolve(segment.day + COMPRESSED_SUFFIX + ".tmp");
+            try (BufferedReader in = Files.newBufferedReader(plain, StandardCharsets.UTF_8);
+                 BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                     new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (ActivityLog.decode(line) == null) {
+                        RecordChecksum.quarantine(plain, line);
+                        continue;
+                    }
+                    out.write(line);
+                    out.newLine();
+                }
+            }
+            force(temp);
+            Files.move(temp, compressed, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(plain);
+        }
+    }
+
+    private void applyRetention() throws IOException {
+        int days;
+        RetentionAction action;
+        List<Segment> expired = new ArrayList<>();
+        synchronized (this) {
+            days = retentionDays;
+            action = retentionAction;
+            if (days <= 0) {
+                return;
+            }
+            LocalDate cutoff = LocalDate.now().minusDays(days);
+            for (Segment segment : segments.headMap(cutoff).values()) {
+                // Only compressed segments; a sealed one is compressed on the next run first
+                if (segment.log == null && Files.exists(compressedPath(segment.day))) {
+                    expired.add(segment);
+                }
+            }
+            for (Segment segment : expired) {
+                segments.remove(segment.day);
+            }
+            if (!expired.isEmpty()) {
+                version++;
+            }
+        }
+
+        for (Segment segment : expired) {
+            if (action == RetentionAction.ARCHIVE) {
+                Files.createDirectories(archiveDirectory);
+                Path meta = metaPath(segment.day);
+                Files.move(compressedPath(segment.day), archiveDirectory.resolve(segment.day + COMPRESSED_SUFFIX),
+                           StandardCopyOption.REPLACE_EXISTING);
+                if (Files.exists(meta)) {
+                    Files.move(meta, archiveDirectory.resolve(segment.day + META_SUFFIX),
+                               StandardCopyOption.REPLACE_EXISTING);
+                }
+            } else {
+                Files.deleteIfExists(compressedPath(segment.day));
+                Files.deleteIfExists(metaPath(segment.day));
+            }
+        }
+        if (!expired.isEmpty()) {
+            System.out.println(String.format("Activity retention: %s %d segment(s) older than %d days",
+                              action == RetentionAction.ARCHIVE ? "archived" : "deleted", expired.size(), days));
+        }
+    }
+
+    // Summary from the metadata file, rebuilt by scanning the segment if it is missing
+    private SegmentInfo loadInfo(LocalDate day) throws IOException {
+        Path meta = metaPath(day);
+        if (Files.exists(meta)) {
+            try {
+                return SegmentInfo.load(meta);
+            } catch (IOException e) {
+                System.err.println("Rebuilding activity segment summary: " + e.getMessage());
+            }
+        }
+        SegmentInfo info = new SegmentInfo();
+        readFile(day, info::add);
+        info.store(meta);
+        return info;
+    }
+
+    private List<LocalDate> listSegmentDays() throws IOException {
+        Set<LocalDate> days = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String day;
+                if (name.endsWith(COMPRESSED_SUFFIX)) {
+                    day = name.substring(0, name.length() - COMPRESSED_SUFFIX.length());
+                } else if (name.endsWith(PLAIN_SUFFIX)) {
+                    day = name.substring(0, name.length() - PLAIN_SUFFIX.length());
+                } else {
+                    continue;
+                }
+                try {
+                    days.add(LocalDate.parse(day));
+                } catch (DateTimeParseException e) {
+                    System.err.println("Ignoring unexpected file in activity directory: " + name);
+                }
+            }
+        }
+        List<LocalDate> sorted = new ArrayList<>(days);
+        Collections.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Split the old single activity file into day segments, then remove it
+     * Each segment is written to a temporary file and forced, and a marker is written once all of them are
+     * complete. Only then are they moved into place, so a restart either starts over from untouched day
+     * files or, seeing the marker, just finishes the moves and never merges a day into itself twice
+     */
+    private void migrateLegacyFile(Path legacyFile) throws IOException {
+        Path marker = directory.resolve(MIGRATION_MARKER);
+        if (legacyFile == null || !Files.exists(legacyFile)) {
+            // Left behind if we stopped between deleting the legacy file and the marker
+            Files.deleteIfExists(marker);
+            return;
+        }
+
+        if (!Files.exists(marker)) {
+            for (Path temp : listMigrationFiles()) {
+                Files.delete(temp);
+            }
+            Map<LocalDate, BufferedWriter> writers = new HashMap<>();
+            int migrated = 0;
+            try (ActivityLog legacy = new ActivityLog(legacyFile, ActivityJournal.DurabilityPolicy.NONE, 0)) {
+                for (int n = 0; n < legacy.size(); n++) {
+                    Activity activity = legacy.get(n);
+                    LocalDate day = activity.getTimestamp().toLocalDate();
+                    BufferedWriter writer = writers.get(day);
+                    if (writer == null) {
+                        writer = Files.newBufferedWriter(migrationPath(day), StandardCharsets.UTF_8);
+                        writers.put(day, writer);
+                    }
+                    writer.write(RecordChecksum.seal(ActivityLog.encode(activity)));
+                    writer.newLine();
+                    migrated++;
+                }
+            } finally {
+                for (BufferedWriter writer : writers.values()) {
+                    writer.close();
+                }
+            }
+
+            for (LocalDate day : writers.keySet()) {
+                Path temp = migrationPath(day);
+                Path target = plainPath(day);
+                if (Files.exists(target)) {
+                    // Keep anything already logged for that day after the migrated records
+                    try (OutputStream out = Files.newOutputStream(temp, StandardOpenOption.APPEND)) {
+                        Files.copy(target, out);
+                    }
+                }
+                force(temp);
+            }
+            Files.createFile(marker);
+            force(marker);
+            System.out.println("Split " + migrated + " activities into " + writers.size() + " daily segments");
+        }
+
+        for (Path temp : listMigrationFiles()) {
+            String name = temp.getFileName().toString();
+            Path target = directory.resolve(name.substring(0, name.length() - MIGRATION_SUFFIX.length()));
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        Files.delete(legacyFile);
+        Files.delete(marker);
+    }
+
+    private List<Path> listMigrationFiles() throws IOException {
+        List<Path> temps = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + PLAIN_SUFFIX + MIGRATION_SUFFIX)) {
+            for (Path file : files) {
+                temps.add(file);
+            }
+        }
+        return temps;
+    }
+
+    private static void force(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        }
+    }
+
+    private Path plainPath(LocalDate day) {
+        return directory.resolve(day + PLAIN_SUFFIX);
+    }
+
+    private Path compressedPath(LocalDate day) {
+        return directory.resolve(day + COMPRESSED_SUFFIX);
+    }
+
+    private Path metaPath(LocalDate day) {
+        return directory.resolve(day + META_SUFFIX);
+    }
+
+    private Path migrationPath(LocalDate day) {
+        return directory.resolve(day + PLAIN_SUFFIX + MIGRATION_SUFFIX);
+    }
+}
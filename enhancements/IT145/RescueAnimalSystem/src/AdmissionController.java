@@ -0,0 +1,170 @@
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounds the number of requests in flight for each class of endpoint.
+ * Every class has its own permits and its own short queue, so a flood of one
+ * kind of request (dashboard polling, say) cannot hold up another (logins).
+ * A request that finds the queue full, or waits in it too long, is shed so
+ * the caller can answer it at once with 503 instead of letting work pile up.
+ */
+public class AdmissionController {
+    /** Endpoint classes that are limited independently */
+    public enum EndpointClass {
+        AUTH,
+        READ,
+        WRITE,
+        STATIC,
+        // Long-lived event streams: held for the connection's lifetime, never queued
+        STREAM
+    }
+
+    private static final long DEFAULT_QUEUE_TIMEOUT_MS = 250;
+
+    private final Map<EndpointClass, Lane> lanes = new EnumMap<>(EndpointClass.class);
+    private final long queueTimeoutMs;
+
+    public AdmissionController() {
+        this(DEFAULT_QUEUE_TIMEOUT_MS);
+        setLimits(EndpointClass.AUTH, 4, 16);
+        setLimits(EndpointClass.READ, 16, 32);
+        setLimits(EndpointClass.WRITE, 8, 16);
+        setLimits(EndpointClass.STATIC, 16, 32);
+        setLimits(EndpointClass.STREAM, 64, 0);
+    }
+
+    public AdmissionController(long queueTimeoutMs) {
+        this.queueTimeoutMs = queueTimeoutMs;
+    }
+
+    /**
+     * Set how many requests of a class may run at once and how many may wait for a slot
+     * Takes effect for requests admitted after the call
+     */
+    public synchronized void setLimits(EndpointClass endpointClass, int maxInFlight, int maxQueued) {
+        lanes.put(endpointClass, new Lane(maxInFlight, maxQueued));
+    }
+
+    /**
+     * Admit a request, waiting briefly in the class's queue if every slot is busy
+     * Returns null if the request should be shed; otherwise the caller must close the returned permit
+     */
+    public Permit tryAdmit(EndpointClass endpointClass) {
+        Lane lane = lane(endpointClass);
+        if (lane.permits.tryAcquire()) {
+            return lane.admit();
+        }
+
+        // Every slot is busy: join the queue if it has room
+        if (lane.queued.incrementAndGet() > lane.maxQueued) {
+            lane.queued.decrementAndGet();
+            lane.shed.incrementAndGet();
+            return null;
+        }
+        try {
+            if (lane.permits.tryAcquire(queueTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return lane.admit();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lane.queued.decrementAndGet();
+        }
+        lane.shed.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Most requests that can be admitted or queued at once across all classes
+     * A thread pool at least this large never makes an admitted request wait for a thread
+     */
+    public synchronized int getCapacity() {
+        int capacity = 0;
+        for (Lane lane : lanes.values()) {
+            capacity += lane.maxInFlight + lane.maxQueued;
+        }
+        return capacity;
+    }
+
+    /** Seconds a shed client should wait before retrying */
+    public long getRetryAfterSeconds() {
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(queueTimeoutMs * 4));
+    }
+
+    /**
+     * Current in-flight and queued counts, and admitted and shed totals, per endpoint class
+     */
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{");
+        boolean first = true;
+        for (Map.Entry<EndpointClass, Lane> entry : lanes.entrySet()) {
+            Lane lane = entry.getValue();
+            if (!first) {
+                json.append(",");
+            }
+            first = false;
+            json.append("\"").append(entry.getKey().name().toLowerCase()).append("\": {")
+                .append("\"inFlight\": ").append(lane.inFlight.get()).append(",")
+                .append("\"maxInFlight\": ").append(lane.maxInFlight).append(",")
+                .append("\"queueDepth\": ").append(lane.queued.get()).append(",")
+                .append("\"maxQueued\": ").append(lane.maxQueued).append(",")
+                .append("\"admitted\": ").append(lane.admitted.get()).append(",")
+                .append("\"shed\": ").append(lane.shed.get())
+                .append("}");
+        }
+        return json.append("}").toString();
+    }
+
+    private synchronized Lane lane(EndpointClass endpointClass) {
+        Lane lane = lanes.get(endpointClass);
+        if (lane == null) {
+            throw new IllegalArgumentException("No limits set for " + endpointClass);
+        }
+        return lane;
+    }
+
+    /** A slot held by an admitted request; closing it lets the next request in */
+    public static class Permit implements AutoCloseable {
+        private final Lane lane;
+        private boolean closed;
+
+        private Permit(Lane lane) {
+            this.lane = lane;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                lane.inFlight.decrementAndGet();
+                lane.permits.release();
+            }
+        }
+    }
+
+    private static class Lane {
+        final int maxInFlight;
+        final int maxQueued;
+        final Semaphore permits;
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicLong admitted = new AtomicLong();
+        final AtomicLong shed = new AtomicLong();
+
+        Lane(int maxInFlight, int maxQueued) {
+            this.maxInFlight = maxInFlight;
+            this.maxQueued = maxQueued;
+            this.permits = new Semaphore(maxInFlight, true);
+        }
+
+        Permit admit() {
+            inFlight.incrementAndGet();
+            admitted.incrementAndGet();
+            return new Permit(this);
+        }
+    }
+}
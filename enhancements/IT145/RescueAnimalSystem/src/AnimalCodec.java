@@ -0,0 +1,565 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Text and binary encodings for animal records.
+ * The text format is the pipe-separated line used by animals.txt and the
+ * write-ahead log. The binary format is a snapshot file: a header with a
+ * magic number, schema version, log sequence number and record count,
+ * followed by records that start with a type tag and hold length-prefixed
+ * UTF-8 strings, decoded in a single pass over a ByteBuffer. From version 2
+ * each record is framed by its length and a CRC32C, so a damaged record is
+ * quarantined and skipped instead of failing the whole snapshot.
+ *
+ * Run as a program to convert snapshots between the two formats:
+ *   java AnimalCodec import data/animals.txt data/animals.bin
+ *   java AnimalCodec export data/animals.bin data/animals.txt
+ */
+public class AnimalCodec {
+    private static final int MAGIC = 0x414E4D4C; // "ANML"
+    private static final short VERSION = 2;
+    private static final short FIRST_CHECKSUMMED_VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 2 + 8 + 4;
+    private static final String TEXT_HEADER = "#lsn=";
+
+    // Type tags
+    private static final byte TAG_ANIMAL = 0;
+    private static final byte TAG_DOG = 1;
+    private static final byte TAG_MONKEY = 2;
+    private static final byte TAG_CAT = 3;
+    private static final byte TAG_BIRD = 4;
+    private static final byte TAG_RABBIT = 5;
+
+    /**
+     * A decoded snapshot and the log sequence number it covers
+     */
+    public static class Snapshot {
+        private final long lsn;
+        private final List<RescueAnimal> animals;
+        private final List<byte[]> rejected;
+
+        public Snapshot(long lsn, List<RescueAnimal> animals, List<byte[]> rejected) {
+            this.lsn = lsn;
+            this.animals = animals;
+            this.rejected = rejected;
+        }
+
+        public long getLsn() { return lsn; }
+        public List<RescueAnimal> getAnimals() { return animals; }
+        // Raw bytes of records that failed their checksum
+        public List<byte[]> getRejected() { return rejected; }
+    }
+
+    // TEXT FORMAT
+    public static RescueAnimal fromLine(String line) {
+        if (line.startsWith("#")) return null;
+        String[] parts = line.split("\\|");
+        if (parts.length < 10) return null;
+
+        String type = parts[1];
+        switch (type.toLowerCase()) {
+            case "dog":
+                if (parts.length >= 11) {
+                    return new Dog(parts[0], parts[10], parts[2], parts[3], parts[4],
+                                  parts[5], parts[6], parts[7], Boolean.parseBoolean(parts[8]), parts[9]);
+                }
+                break;
+            case "monkey":
+                if (parts.length >= 14) {
+                    return new Monkey(parts[0], parts[2], parts[3], parts[4], parts[10],
+                                     parts[11], parts[12], parts[13], parts[5], parts[6],
+                                     parts[7], Boolean.parseBoolean(parts[8]), parts[9]);
+                }
+                break;
+            case "cat":
+                if (parts.length >= 13) {
+                    return new Cat(parts[0], parts[10], parts[11], Boolean.parseBoolean(parts[12]),
+                                  parts[2], parts[3], parts[4], parts[5], parts[6],
+                                  parts[7], Boolean.parseBoolean(parts[8]), parts[9]);
+                }
+                break;
+            case "bird":
+                if (parts.length >= 14) {
+                    return new Bird(parts[0], parts[10], parts[11], Boolean.parseBoolean(parts[12]),
+                                   parts[13], parts[2], parts[3], parts[4], parts[5], parts[6],
+                                   parts[7], Boolean.parseBoolean(parts[8]), parts[9]);
+                }
+                break;
+            case "rabbit":
+                if (parts.length >= 14) {
+                    return new Rabbit(parts[0], parts[10], parts[11], parts[12],
+                                     Boolean.parseBoolean(parts[13]), parts[2], parts[3], parts[4],
+                                     parts[5], parts[6], parts[7], Boolean.parseBoolean(parts[8]), parts[9]);
+                }
+                break;
+        }
+        return null;
+    }
+
+    public static String toLine(RescueAnimal animal) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(animal.getName()).append("|")
+          .append(animal.getAnimalType()).append("|")
+          .append(animal.getGender()).append("|")
+          .append(animal.getAge()).append("|")
+          .append(animal.getWeight()).append("|")
+          .append(animal.getAcquisitionDate()).append("|")
+          .append(animal.getAcquisitionLocation()).append("|")
+          .append(animal.getTrainingStatus()).append("|")
+          .append(animal.getReserved()).append("|")
+          .append(animal.getInServiceLocation());
+
+        if (animal instanceof Dog) {
+            Dog dog = (Dog) animal;
+            sb.append("|").append(dog.getBreed());
+        } else if (animal instanceof Monkey) {
+            Monkey monkey = (Monkey) animal;
+            sb.append("|").append(monkey.getSpecies())
+              .append("|").append(monkey.getTailLength())
+              .append("|").append(monkey.getHeight())
+              .append("|").append(monkey.getBodyLength());
+        } else if (animal instanceof Cat) {
+            Cat cat = (Cat) animal;
+            sb.append("|").append(cat.getBreed())
+              .append("|").append(cat.getCoatColor())
+              .append("|").append(cat.isDeclawed());
+        } else if (animal instanceof Bird) {
+            Bird bird = (Bird) animal;
+            sb.append("|").append(bird.getSpecies())
+              .append("|").append(bird.getWingspan())
+              .append("|").append(bird.isCanFly())
+              .append("|").append(bird.getBeakType());
+        } else if (animal instanceof Rabbit) {
+            Rabbit rabbit = (Rabbit) animal;
+            sb.append("|").append(rabbit.getBreed())
+              .append("|").append(rabbit.getFurColor())
+              .append("|").append(rabbit.getEarType())
+              .append("|").append(rabbit.isLitterTrained());
+        }
+
+        return sb.toString();
+    }
+
+    // BINARY FORMAT
+    /**
+     * Encode a binary snapshot covering the given log sequence number
+     */
+    public static byte[] encode(Collection<RescueAnimal> animals, long lsn) {
+        Encoder out = new Encoder(HEADER_BYTES + animals.size() * 96);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(lsn);
+        out.writeInt(animals.size());
+
+        for (RescueAnimal animal : animals) {
+            int start = out.beginRecord();
+            if (animal instanceof Dog) {
+                out.writeByte(TAG_DOG);
+            } else if (animal instanceof Monkey) {
+                out.writeByte(TAG_MONKEY);
+            } else if (animal instanceof Cat) {
+                out.writeByte(TAG_CAT);
+            } else if (animal instanceof Bird) {
+                out.writeByte(TAG_BIRD);
+            } else if (animal instanceof Rabbit) {
+                out.writeByte(TAG_RABBIT);
+            } else {
+                out.writeByte(TAG_ANIMAL);
+                out.writeString(animal.getAnimalType());
+            }
+
+            out.writeString(animal.getName());
+            out.writeString(animal.getGender());
+            out.writeString(animal.getAge());
+            out.writeString(animal.getWeight());
+            out.writeString(animal.getAcquisitionDate());
+            out.writeString(animal.getAcquisitionLocation());
+            out.writeString(animal.getTrainingStatus());
+            out.writeBoolean(animal.getReserved());
+            out.writeString(animal.getInServiceLocation());
+
+            if (animal instanceof Dog) {
+                out.writeString(((Dog) animal).getBreed());
+            } else if (animal instanceof Monkey) {
+                Monkey monkey = (Monkey) animal;
+                out.writeString(monkey.getSpecies());
+                out.writeString(monkey.getTailLength());
+                out.writeString(monkey.getHeight());
+                out.writeString(monkey.getBodyLength());
+            } else if (animal instanceof Cat) {
+                Cat cat = (Cat) animal;
+                out.writeString(cat.getBreed());
+                out.writeString(cat.getCoatColor());
+                out.writeBoolean(cat.isDeclawed());
+            } else if (animal instanceof Bird) {
+                Bird bird = (Bird) animal;
+                out.writeString(bird.getSpecies());
+                out.writeString(bird.getWingspan());
+                out.writeBoolean(bird.isCanFly());
+                out.writeString(bird.getBeakType());
+            } else if (animal instanceof Rabbit) {
+                Rabbit rabbit = (Rabbit) animal;
+                out.writeString(rabbit.getBreed());
+                out.writeString(rabbit.getFurColor());
+                out.writeString(rabbit.getEarType());
+                out.writeBoolean(rabbit.isLitterTrained());
+            }
+            out.endRecord(start);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode a binary snapshot in one pass
+     */
+    public static Snapshot decode(ByteBuffer in) throws IOException {
+        try {
+            short version = readHeader(in);
+            long lsn = in.getLong();
+            int count = in.getInt();
+            List<RescueAnimal> animals = new ArrayList<>(count);
+            List<byte[]> rejected = new ArrayList<>();
+            StringCache strings = new StringCache();
+            for (int i = 0; i < count; i++) {
+                if (version < FIRST_CHECKSUMMED_VERSION) {
+                    animals.add(decodeRecord(in, strings));
+                    continue;
+                }
+
+                int length = in.getInt();
+                int start = in.position();
+                if (length < 0 || length > in.remaining() - 4) {
+                    throw new IOException("Animal snapshot record " + i + " is truncated");
+                }
+                long expected = in.getInt(start + length) & 0xFFFFFFFFL;
+                CRC32C crc = new CRC32C();
+                crc.update(in.duplicate().limit(start + length));
+                if (crc.getValue() == expected) {
+                    animals.add(decodeRecord(in, strings));
+                } else {
+                    byte[] damaged = new byte[length];
+                    in.get(start, damaged);
+                    rejected.add(damaged);
+                }
+                in.position(start + length + 4);
+            }
+            return new Snapshot(lsn, animals, rejected);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Animal snapshot is truncated");
+        }
+    }
+
+    /**
+     * Read a binary snapshot, quarantining any record that fails its checksum
+     */
+    public static Snapshot read(Path file) throws IOException {
+        Snapshot snapshot = decode(ByteBuffer.wrap(Files.readAllBytes(file)));
+        for (byte[] damaged : snapshot.getRejected()) {
+            RecordChecksum.quarantine(file, Base64.getEncoder().encodeToString(damaged));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Log sequence number of a binary snapshot, read from the header alone
+     */
+    public static long readLsn(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] header = new byte[HEADER_BYTES];
+            new DataInputStream(in).readFully(header);
+            ByteBuffer buffer = ByteBuffer.wrap(header);
+            readHeader(buffer);
+            return buffer.getLong();
+        }
+    }
+
+    /**
+     * Log sequence number in a text snapshot's header line, or 0 if it has none
+     */
+    public static long readTextLsn(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String first = reader.readLine();
+            if (first != null && first.startsWith(TEXT_HEADER)) {
+                try {
+                    return Long.parseLong(first.substring(TEXT_HEADER.length()).trim());
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid snapshot header: " + first);
+                }
+            }
+        }
+        return 0;
+    }
+
+    // Check the magic number and return the schema version
+    private static short readHeader(ByteBuffer in) throws IOException {
+        if (in.remaining() < HEADER_BYTES || in.getInt() != MAGIC) {
+            throw new IOException("Not an animal snapshot");
+        }
+        short version = in.getShort();
+        if (version > VERSION) {
+            throw new IOException("Unsupported animal snapshot version " + version);
+        }
+        return version;
+    }
+
+    private static RescueAnimal decodeRecord(ByteBuffer in, StringCache strings) throws IOException {
+        byte tag = in.get();
+        String animalType = tag == TAG_ANIMAL ? readString(in, strings) : null;
+
+        String name = readString(in, strings);
+        String gender = readString(in, strings);
+        String age = readString(in, strings);
+        String weight = readString(in, strings);
+        String acquisitionDate = readString(in, strings);
+        String acquisitionCountry = readString(in, strings);
+        String trainingStatus = readString(in, strings);
+        boolean reserved = in.get() != 0;
+        String inServiceCountry = readString(in, strings);
+
+        switch (tag) {
+            case TAG_DOG:
+                return new Dog(name, readString(in, strings), gender, age, weight, acquisitionDate,
+                              acquisitionCountry, trainingStatus, reserved, inServiceCountry);
+            case TAG_MONKEY: {
+                String species = readString(in, strings);
+                String tailLength = readString(in, strings);
+                String height = readString(in, strings);
+                String bodyLength = readString(in, strings);
+                return new Monkey(name, gender, age, weight, species, tailLength, height, bodyLength,
+                                 acquisitionDate, acquisitionCountry, trainingStatus, reserved,
+                                 inServiceCountry);
+            }
+            case TAG_CAT: {
+                String breed = readString(in, strings);
+                String coatColor = readString(in, strings);
+                boolean declawed = in.get() != 0;
+                return new Cat(name, breed, coatColor, declawed, gender, age, weight, acquisitionDate,
+                              acquisitionCountry, trainingStatus, reserved, inServiceCountry);
+            }
+            case TAG_BIRD: {
+                String species = readString(in, strings);
+                String wingspan = readString(in, strings);
+                boolean canFly = in.get() != 0;
+                String beakType = readString(in, strings);
+                return new Bird(name, species, wingspan, canFly, beakType, gender, age, weight,
+                               acquisitionDate, acquisitionCountry, trainingStatus, reserved,
+                               inServiceCountry);
+            }
+            case TAG_RABBIT: {
+                String breed = readString(in, strings);
+                String furColor = readString(in, strings);
+                String earType = readString(in, strings);
+                boolean litterTrained = in.get() != 0;
+                return new Rabbit(name, breed, furColor, earType, litterTrained, gender, age, weight,
+                                 acquisitionDate, acquisitionCountry, trainingStatus, reserved,
+                                 inServiceCountry);
+            }
+            case TAG_ANIMAL:
+                return new RescueAnimal(name, animalType, gender, age, weight, acquisitionDate,
+                                        acquisitionCountry, trainingStatus, reserved, inServiceCountry);
+            default:
+                throw new IOException("Unknown animal type tag " + tag);
+        }
+    }
+
+    // Strings are a varint of (byte length + 1), 0 meaning null, then UTF-8 bytes
+    private static String readString(ByteBuffer in, StringCache strings) {
+        int length = readVarint(in) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] array;
+        int offset;
+        if (in.hasArray()) {
+            array = in.array();
+            offset = in.arrayOffset() + in.position();
+            in.position(in.position() + length);
+        } else {
+            array = new byte[length];
+            offset = 0;
+            in.get(array);
+        }
+        return strings.get(array, offset, length);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+
+    /**
+     * Reuses String instances for short repeated values while decoding
+     * Gender, country, status and breed repeat across most records, so this
+     * avoids allocating (and keeping) millions of equal strings
+     */
+    private static class StringCache {
+        private static final int MAX_CACHED_LENGTH = 32;
+        private static final int SLOTS = 4096;
+
+        private final byte[][] keys = new byte[SLOTS][];
+        private final String[] values = new String[SLOTS];
+
+        String get(byte[] array, int offset, int length) {
+            if (length > MAX_CACHED_LENGTH) {
+                return new String(array, offset, length, StandardCharsets.UTF_8);
+            }
+            int hash = length;
+            for (int i = offset; i < offset + length; i++) {
+                hash = 31 * hash + array[i];
+            }
+            int slot = (hash ^ (hash >>> 16)) & (SLOTS - 1);
+
+            byte[] key = keys[slot];
+            if (key != null && Arrays.equals(key, 0, key.length, array, offset, offset + length)) {
+                return values[slot];
+            }
+            String value = new String(array, offset, length, StandardCharsets.UTF_8);
+            keys[slot] = Arrays.copyOfRange(array, offset, offset + length);
+            values[slot] = value;
+            return value;
+        }
+    }
+
+    // Growable big-endian output buffer
+    private static class Encoder {
+        private byte[] buffer;
+        private int position = 0;
+
+        Encoder(int capacity) {
+            buffer = new byte[Math.max(capacity, 64)];
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            buffer[position++] = (byte) value;
+        }
+
+        void writeBoolean(boolean value) {
+            writeByte(value ? 1 : 0);
+        }
+
+        void writeShort(int value) {
+            writeByte(value >>> 8);
+            writeByte(value);
+        }
+
+        void writeInt(int value) {
+            writeShort(value >>> 16);
+            writeShort(value);
+        }
+
+        void writeLong(long value) {
+            writeInt((int) (value >>> 32));
+            writeInt((int) value);
+        }
+
+        void writeVarint(int value) {
+            while ((value & ~0x7F) != 0) {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, position, bytes.length);
+            position += bytes.length;
+        }
+
+        // Reserve the length of a record about to be written
+        int beginRecord() {
+            writeInt(0);
+            return position;
+        }
+
+        // Fill in the record's length and append its checksum
+        void endRecord(int start) {
+            int length = position - start;
+            int end = position;
+            position = start - 4;
+            writeInt(length);
+            position = end;
+            writeInt((int) RecordChecksum.checksum(buffer, start, length));
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, position);
+        }
+
+        private void ensure(int extra) {
+            if (position + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + extra));
+            }
+        }
+    }
+
+    // CONVERTER
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.out.println("Usage: java AnimalCodec import <animals.txt> <animals.bin>");
+            System.out.println("       java AnimalCodec export <animals.bin> <animals.txt>");
+            return;
+        }
+        Path source = Paths.get(args[1]);
+        Path target = Paths.get(args[2]);
+
+        if (args[0].equals("import")) {
+            List<RescueAnimal> animals = new ArrayList<>();
+            for (String line : Files.readAllLines(source, StandardCharsets.UTF_8)) {
+                String record = RecordChecksum.unseal(line);
+                if (record == null) {
+                    System.out.println("Skipping record with a bad checksum: " + line);
+                    continue;
+                }
+                RescueAnimal animal = fromLine(record);
+                if (animal != null) {
+                    animals.add(animal);
+                }
+            }
+            Files.write(target, encode(animals, readTextLsn(source)));
+            System.out.println("Imported " + animals.size() + " animals into " + target);
+        } else if (args[0].equals("export")) {
+            Snapshot snapshot = read(source);
+            try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+                writer.write(TEXT_HEADER + snapshot.getLsn());
+                writer.newLine();
+                for (RescueAnimal animal : snapshot.getAnimals()) {
+                    writer.write(RecordChecksum.seal(toLine(animal)));
+                    writer.newLine();
+                }
+            }
+            System.out.println("Exported " + snapshot.getAnimals().size() + " animals to " + target);
+        } else {
+            System.out.println("Unknown command: " + args[0]);
+        }
+    }
+}
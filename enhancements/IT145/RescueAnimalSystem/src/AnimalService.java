@@ -1,4 +1,5 @@
 import java.util.*;
+import java.util.function.Consumer;
 
 public class AnimalService {
     private List<Dog> dogList;
@@ -13,6 +14,12 @@ public class AnimalService {
     private MonitoringSystem monitoringSystem;
     private SimpleDataManager dataManager;  // Changed from JsonDataManager
     
+    // In-service, unreserved animals by "type|country", oldest first, and the key each one is filed under
+    private final Map<String, Set<RescueAnimal>> availableByTypeAndCountry = new HashMap<>();
+    private final Map<RescueAnimal, String> availabilityKeys = new IdentityHashMap<>();
+    // Guards only the two maps above, and only for a few map operations at a time
+    private final Object availabilityLock = new Object();
+    
     // Constructor with both MonitoringSystem and SimpleDataManager
     public AnimalService(MonitoringSystem monitoringSystem, SimpleDataManager dataManager) {  // Changed from JsonDataManager
         this.monitoringSystem = monitoringSystem;
@@ -35,15 +42,20 @@ public class AnimalService {
     }
     
     /**
-     * Refresh in-memory animal lists from the database
-     * This allows real-time updates without restarting the application
+     * Load the in-memory animal lists and availability index from the database
+     * Startup only: later edits update both one animal at a time, since a rebuild would briefly
+     * empty the index under reservations that do not take the service lock
      */
-    public synchronized void refreshFromDatabase() {
+    private synchronized void refreshFromDatabase() {
         dogList = new ArrayList<>();
         monkeyList = new ArrayList<>();
         catList = new ArrayList<>();
         birdList = new ArrayList<>();
         rabbitList = new ArrayList<>();
+        synchronized (availabilityLock) {
+            availableByTypeAndCountry.clear();
+            availabilityKeys.clear();
+        }
         
         if (dataManager != null) {
             List<RescueAnimal> animals = dataManager.getAnimals();
@@ -76,6 +88,9 @@ public class AnimalService {
                         break;
                 }
             }
+            for (RescueAnimal animal : getAllAnimals()) {
+                updateAvailability(animal);
+            }
         }
         
         System.out.println("Animal lists refreshed from database:");
@@ -113,6 +128,7 @@ public class AnimalService {
         
         if (success) {
             dogList.add(dog);
+            updateAvailability(dog);
             monitoringSystem.logActivity(dog.getName(), "Dog", "INTAKE", 
                                        "New dog added to system", "Intake Facility", addedBy);
         }
@@ -121,10 +137,7 @@ public class AnimalService {
     }
     
     public Dog findDogByName(String name) {
-        return dogList.stream()
-                     .filter(dog -> dog.getName().equalsIgnoreCase(name))
-                     .findFirst()
-                     .orElse(null);
+        return findByName(name, Dog.class);
     }
     
     // Monkey methods
@@ -140,6 +153,7 @@ public class AnimalService {
         
         if (success) {
             monkeyList.add(monkey);
+            updateAvailability(monkey);
             monitoringSystem.logActivity(monkey.getName(), "Monkey", "INTAKE", 
                                        "New monkey added to system", "Intake Facility", addedBy);
         }
@@ -148,10 +162,7 @@ public class AnimalService {
     }
     
     public Monkey findMonkeyByName(String name) {
-        return monkeyList.stream()
-                        .filter(monkey -> monkey.getName().equalsIgnoreCase(name))
-                        .findFirst()
-                        .orElse(null);
+        return findByName(name, Monkey.class);
     }
     
     // Cat methods
@@ -167,6 +178,7 @@ public class AnimalService {
         
         if (success) {
             catList.add(cat);
+            updateAvailability(cat);
             monitoringSystem.logActivity(cat.getName(), "Cat", "INTAKE", 
                                        "New cat added to system", "Intake Facility", addedBy);
         }
@@ -175,10 +187,7 @@ public class AnimalService {
     }
     
     public Cat findCatByName(String name) {
-        return catList.stream()
-                     .filter(cat -> cat.getName().equalsIgnoreCase(name))
-                     .findFirst()
-                     .orElse(null);
+        return findByName(name, Cat.class);
     }
     
     // Bird methods
@@ -194,6 +203,7 @@ public class AnimalService {
         
         if (success) {
             birdList.add(bird);
+            updateAvailability(bird);
             monitoringSystem.logActivity(bird.getName(), "Bird", "INTAKE", 
                                        "New bird added to system", "Intake Facility", addedBy);
         }
@@ -202,10 +212,7 @@ public class AnimalService {
     }
     
     public Bird findBirdByName(String name) {
-        return birdList.stream()
-                      .filter(bird -> bird.getName().equalsIgnoreCase(name))
-                      .findFirst()
-                      .orElse(null);
+        return findByName(name, Bird.class);
     }
     
     // Rabbit methods
@@ -221,6 +228,7 @@ public class AnimalService {
         
         if (success) {
             rabbitList.add(rabbit);
+            updateAvailability(rabbit);
             monitoringSystem.logActivity(rabbit.getName(), "Rabbit", "INTAKE", 
                                        "New rabbit added to system", "Intake Facility", addedBy);
         }
@@ -229,10 +237,20 @@ public class AnimalService {
     }
     
     public Rabbit findRabbitByName(String name) {
-        return rabbitList.stream()
-                        .filter(rabbit -> rabbit.getName().equalsIgnoreCase(name))
-                        .findFirst()
-                        .orElse(null);
+        return findByName(name, Rabbit.class);
+    }
+    
+    /**
+     * Find an animal of any type by name, ignoring case
+     * Served from the data manager's name index rather than a scan of the type lists
+     */
+    public RescueAnimal findAnimalByName(String name) {
+        return dataManager != null ? dataManager.findAnimalByName(name) : null;
+    }
+    
+    private <T extends RescueAnimal> T findByName(String name, Class<T> type) {
+        RescueAnimal animal = findAnimalByName(name);
+        return type.isInstance(animal) ? type.cast(animal) : null;
     }
     
     /**
@@ -241,33 +259,7 @@ public class AnimalService {
      */
     public synchronized boolean deleteAnimal(String name, String deletedBy) {
         // Find the animal first
-        RescueAnimal animal = null;
-        String animalType = "";
-        
-        animal = findDogByName(name);
-        if (animal != null) {
-            animalType = "Dog";
-        } else {
-            animal = findMonkeyByName(name);
-            if (animal != null) {
-                animalType = "Monkey";
-            } else {
-                animal = findCatByName(name);
-                if (animal != null) {
-                    animalType = "Cat";
-                } else {
-                    animal = findBirdByName(name);
-                    if (animal != null) {
-                        animalType = "Bird";
-                    } else {
-                        animal = findRabbitByName(name);
-                        if (animal != null) {
-                            animalType = "Rabbit";
-                        }
-                    }
-                }
-            }
-        }
+        RescueAnimal animal = findAnimalByName(name);
         
         if (animal == null) {
             return false;
@@ -281,20 +273,128 @@ public class AnimalService {
         
         if (success) {
             // Remove from in-memory lists
-            dogList.removeIf(dog -> dog.getName().equalsIgnoreCase(name));
-            monkeyList.removeIf(monkey -> monkey.getName().equalsIgnoreCase(name));
-            catList.removeIf(cat -> cat.getName().equalsIgnoreCase(name));
-            birdList.removeIf(bird -> bird.getName().equalsIgnoreCase(name));
-            rabbitList.removeIf(rabbit -> rabbit.getName().equalsIgnoreCase(name));
+            dogList.remove(animal);
+            monkeyList.remove(animal);
+            catList.remove(animal);
+            birdList.remove(animal);
+            rabbitList.remove(animal);
+            removeAvailability(animal);
             
             // Log the deletion
-            monitoringSystem.logActivity(name, animalType, "DELETION", 
+            monitoringSystem.logActivity(animal.getName(), animal.getAnimalType(), "DELETION", 
                                        "Animal removed from system", "System", deletedBy);
         }
         
         return success;
     }
     
+    /**
+     * Edit an animal and optionally rename it, then refile it in the availability index
+     * The name check, the edit and the re-keying happen together under the data manager's lock,
+     * so two concurrent renames cannot both take the same name. Returns null if the edit was refused
+     */
+    public RescueAnimal updateAnimal(String name, String newName, Consumer<RescueAnimal> edit) {
+        if (dataManager == null) {
+            return null;
+        }
+        RescueAnimal animal = dataManager.updateAnimal(name, newName, edit);
+        if (animal != null) {
+            updateAvailability(animal);
+        }
+        return animal;
+    }
+    
+    /**
+     * Record an in-place edit (reservation, training status) so it is persisted
+     */
+    public synchronized void animalChanged(RescueAnimal animal) {
+        updateAvailability(animal);
+        if (dataManager != null) {
+            dataManager.markAnimalChanged(animal);
+        }
+    }
+    
+    /**
+     * Reserve the longest-available in-service animal of a type for a country
+     * Taken straight from the availability index, so the cost does not grow with the number of animals.
+     * Not synchronized on the service: the index hands each candidate to one caller, and the
+     * animal's own flag settles races with reservations by name
+     */
+    public RescueAnimal reserveAvailable(String animalType, String serviceCountry) {
+        String key = availabilityKey(animalType, serviceCountry);
+        RescueAnimal animal;
+        while ((animal = claimAvailable(key)) != null) {
+            if (animal.tryReserve()) {
+                // Drop it again in case an edit refiled it while it was claimed
+                updateAvailability(animal);
+                if (dataManager != null) {
+                    dataManager.markAnimalChanged(animal);
+                }
+                return animal;
+            }
+            // Reserved by name since it was indexed, and nothing changed; try the next one
+        }
+        return null;
+    }
+    
+    // Take the longest-available animal out of the index, or null if there is none
+    private RescueAnimal claimAvailable(String key) {
+        synchronized (availabilityLock) {
+            Set<RescueAnimal> available = availableByTypeAndCountry.get(key);
+            if (available == null) {
+                return null;
+            }
+            RescueAnimal animal = available.iterator().next();
+            removeAvailability(animal);
+            return animal;
+        }
+    }
+    
+    // File the animal under its current type and country if it can be reserved, otherwise drop it
+    private void updateAvailability(RescueAnimal animal) {
+        String key = animal.isAvailable() && animal.getInServiceLocation() != null
+            ? availabilityKey(animal.getAnimalType(), animal.getInServiceLocation())
+            : null;
+        synchronized (availabilityLock) {
+            String previous = availabilityKeys.get(animal);
+            if (Objects.equals(key, previous)) {
+                return;
+            }
+            removeAvailability(animal);
+            if (key != null) {
+                availableByTypeAndCountry.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(animal);
+                availabilityKeys.put(animal, key);
+            }
+        }
+    }
+    
+    private void removeAvailability(RescueAnimal animal) {
+        synchronized (availabilityLock) {
+            String previous = availabilityKeys.remove(animal);
+            if (previous != null) {
+                Set<RescueAnimal> available = availableByTypeAndCountry.get(previous);
+                available.remove(animal);
+                if (available.isEmpty()) {
+                    availableByTypeAndCountry.remove(previous);
+                }
+            }
+        }
+    }
+    
+    private static String availabilityKey(String animalType, String serviceCountry) {
+        return animalType.toLowerCase(Locale.ROOT) + "|" + serviceCountry.toLowerCase(Locale.ROOT);
+    }
+    
+    private List<RescueAnimal> getAllAnimals() {
+        List<RescueAnimal> all = new ArrayList<>(getTotalAnimals());
+        all.addAll(dogList);
+        all.addAll(monkeyList);
+        all.addAll(catList);
+        all.addAll(birdList);
+        all.addAll(rabbitList);
+        return all;
+    }
+    
     // Validation methods
     public boolean isValidMonkeySpecies(String species) {
         return validMonkeySpecies.contains(species.toLowerCase());
@@ -313,11 +413,11 @@ public class AnimalService {
     }
     
     // Getter methods - return copies to prevent external modification
-    public List<Dog> getDogList() { return new ArrayList<>(dogList); }
-    public List<Monkey> getMonkeyList() { return new ArrayList<>(monkeyList); }
-    public List<Cat> getCatList() { return new ArrayList<>(catList); }
-    public List<Bird> getBirdList() { return new ArrayList<>(birdList); }
-    public List<Rabbit> getRabbitList() { return new ArrayList<>(rabbitList); }
+    public synchronized List<Dog> getDogList() { return new ArrayList<>(dogList); }
+    public synchronized List<Monkey> getMonkeyList() { return new ArrayList<>(monkeyList); }
+    public synchronized List<Cat> getCatList() { return new ArrayList<>(catList); }
+    public synchronized List<Bird> getBirdList() { return new ArrayList<>(birdList); }
+    public synchronized List<Rabbit> getRabbitList() { return new ArrayList<>(rabbitList); }
     
     public List<String> getValidMonkeySpecies() { return new ArrayList<>(validMonkeySpecies); }
     public List<String> getValidCatBreeds() { return new ArrayList<>(validCatBreeds); }
@@ -325,11 +425,11 @@ public class AnimalService {
     public List<String> getValidRabbitBreeds() { return new ArrayList<>(validRabbitBreeds); }
     
     // Utility methods
-    public int getTotalAnimals() {
+    public synchronized int getTotalAnimals() {
         return dogList.size() + monkeyList.size() + catList.size() + birdList.size() + rabbitList.size();
     }
     
-    public int getAvailableAnimals() {
+    public synchronized int getAvailableAnimals() {
         int available = 0;
         
         available += dogList.stream().mapToInt(dog -> 
@@ -346,7 +446,7 @@ public class AnimalService {
         return available;
     }
     
-    public int getReservedAnimals() {
+    public synchronized int getReservedAnimals() {
         int reserved = 0;
         
         reserved += dogList.stream().mapToInt(dog -> dog.getReserved() ? 1 : 0).sum();
@@ -358,7 +458,7 @@ public class AnimalService {
         return reserved;
     }
     
-    public int getTrainingAnimals() {
+    public synchronized int getTrainingAnimals() {
         int training = 0;
         
         training += dogList.stream().mapToInt(dog -> 
@@ -385,7 +485,7 @@ public class AnimalService {
     /**
      * Get all available animals (in service and not reserved)
      */
-    public List<RescueAnimal> getAvailableAnimalsList() {
+    public synchronized List<RescueAnimal> getAvailableAnimalsList() {
         List<RescueAnimal> available = new ArrayList<>();
         
         dogList.stream()
@@ -1,5 +1,6 @@
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Scanner;
@@ -11,6 +12,9 @@ public class AuthenticationSystem {
     private static final long SESSION_TIMEOUT = 30 * 60 * 1000; // 30 minutes in milliseconds
     private static final int MAX_LOGIN_ATTEMPTS = 5;
     private Map<String, LoginAttemptTracker> loginAttempts;
+    // Bumped whenever a session is created or removed; last access times are tracked separately, by the minute
+    private final AtomicLong sessionsVersion = new AtomicLong();
+    private static final long LAST_ACCESS_RESOLUTION = 60 * 1000;
     
     public AuthenticationSystem(SimpleDataManager dataManager) {
         this.dataManager = dataManager;
@@ -46,6 +50,7 @@ public class AuthenticationSystem {
             String sessionId = generateSessionId();
             SessionData session = new SessionData(sessionId, user, System.currentTimeMillis());
             activeSessions.put(sessionId, session);
+            sessionsVersion.incrementAndGet();
             
             System.out.println(String.format("User logged in successfully: %s (%s) - Session: %s", 
                               username, user.getRole(), sessionId.substring(0, 8) + "..."));
@@ -166,7 +171,7 @@ public class AuthenticationSystem {
         
         // Save changes to database
         if (dataManager != null) {
-            dataManager.saveUsers();
+            dataManager.updateUser(targetUser);
         }
         
         // Invalidate all sessions for this user if role was downgraded
@@ -227,6 +232,7 @@ public class AuthenticationSystem {
     private void invalidateUserSessions(String username) {
         activeSessions.entrySet().removeIf(entry -> 
             entry.getValue().getUser().getUsername().equals(username));
+        sessionsVersion.incrementAndGet();
         System.out.println("All sessions invalidated for user: " + username);
     }
     
@@ -269,7 +275,7 @@ public class AuthenticationSystem {
         
         // Save changes to database
         if (dataManager != null) {
-            dataManager.saveUsers();
+            dataManager.updateUser(targetUser);
         }
         
         // Invalidate all sessions for this user to force re-login
@@ -311,7 +317,7 @@ public class AuthenticationSystem {
         
         // Save changes to database
         if (dataManager != null) {
-            dataManager.saveUsers();
+            dataManager.updateUser(targetUser);
         }
         
         // If deactivating, invalidate all sessions for this user
@@ -356,6 +362,7 @@ public class AuthenticationSystem {
         // Check if session has expired
         if (System.currentTimeMillis() - session.getLastAccess() > SESSION_TIMEOUT) {
             activeSessions.remove(sessionId);
+            sessionsVersion.incrementAndGet();
             System.out.println("Session expired and removed: " + sessionId.substring(0, 8) + "...");
             return null;
         }
@@ -364,6 +371,7 @@ public class AuthenticationSystem {
         User user = getUser(session.getUser().getUsername());
         if (user == null || !user.isActive()) {
             activeSessions.remove(sessionId);
+            sessionsVersion.incrementAndGet();
             System.out.println("Session invalidated - user inactive: " + sessionId.substring(0, 8) + "...");
             return null;
         }
@@ -373,12 +381,27 @@ public class AuthenticationSystem {
         return session;
     }
     
+    /**
+     * Whether a session is still usable, without touching it
+     * Unlike validateSession this neither extends the session nor removes it, so a
+     * long-lived connection can check its session without keeping it alive
+     */
+    public boolean isSessionValid(String sessionId) {
+        SessionData session = sessionId != null ? activeSessions.get(sessionId) : null;
+        if (session == null || System.currentTimeMillis() - session.getLastAccess() > SESSION_TIMEOUT) {
+            return false;
+        }
+        User user = getUser(session.getUser().getUsername());
+        return user != null && user.isActive();
+    }
+    
     /**
      * Logout by session ID (web-based)
      */
     public boolean logout(String sessionId) {
         SessionData session = activeSessions.remove(sessionId);
         if (session != null) {
+            sessionsVersion.incrementAndGet();
             System.out.println("User logged out: " + session.getUser().getUsername() + 
                              " - Session: " + sessionId.substring(0, 8) + "...");
             return true;
@@ -386,6 +409,21 @@ public class AuthenticationSystem {
         return false;
     }
     
+    /**
+     * Tag for the active session list as getActiveSessions reports it
+     * Changes when a session is created or removed, or when a session's last access
+     * moves into a new minute; a session only ever moves forward, so the sum of
+     * those minutes changes whenever any of them does
+     */
+    public String getSessionsTag() {
+        long version = sessionsVersion.get();
+        long minutes = 0;
+        for (SessionData session : activeSessions.values()) {
+            minutes += session.getLastAccess() / LAST_ACCESS_RESOLUTION;
+        }
+        return version + "-" + Long.toString(minutes, 36);
+    }
+    
     /**
      * Logout current user (console-based)
      */
@@ -466,7 +504,7 @@ public class AuthenticationSystem {
         
         // Save changes to database
         if (dataManager != null) {
-            dataManager.saveUsers();
+            dataManager.updateUser(targetUser);
         }
         
         System.out.println("Password changed successfully for user: " + username);
@@ -495,7 +533,8 @@ public class AuthenticationSystem {
                 session.getUser().getUsername(),
                 session.getUser().getFullName(),
                 session.getCreatedTime(),
-                session.getLastAccess()
+                // To the minute, so the list is not different on every request
+                session.getLastAccess() / LAST_ACCESS_RESOLUTION * LAST_ACCESS_RESOLUTION
             ));
         }
         
@@ -559,6 +598,7 @@ public class AuthenticationSystem {
         }
         
         if (removedCount > 0) {
+            sessionsVersion.incrementAndGet();
             System.out.println("Cleaned up " + removedCount + " expired sessions");
         }
     }
@@ -586,12 +626,12 @@ public class AuthenticationSystem {
         private LocalDateTime lastAttempt = LocalDateTime.now();
         private static final int LOCKOUT_MINUTES = 15;
         
-        public void addFailedAttempt() {
+        public synchronized void addFailedAttempt() {
             attemptCount++;
             lastAttempt = LocalDateTime.now();
         }
         
-        public boolean isLocked() {
+        public synchronized boolean isLocked() {
             if (attemptCount < MAX_LOGIN_ATTEMPTS) {
                 return false;
             }
@@ -606,11 +646,11 @@ public class AuthenticationSystem {
             return true;
         }
         
-        public int getAttemptCount() {
+        public synchronized int getAttemptCount() {
             return attemptCount;
         }
         
-        public boolean shouldReset() {
+        public synchronized boolean shouldReset() {
             // Reset tracker if no attempts for 24 hours
             return ChronoUnit.HOURS.between(lastAttempt, LocalDateTime.now()) > 24;
         }
@@ -648,7 +688,7 @@ class SessionData {
     private String sessionId;
     private User user;
     private long createdTime;
-    private long lastAccess;
+    private volatile long lastAccess;
     
     public SessionData(String sessionId, User user, long createdTime) {
         this.sessionId = sessionId;
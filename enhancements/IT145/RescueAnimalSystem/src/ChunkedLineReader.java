@@ -0,0 +1,175 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+
+/**
+ * Parses line-based data files without reading them into a list of lines first.
+ * Small files are streamed through a buffered reader on the file channel.
+ * Large files are cut into chunks at line boundaries and the chunks are
+ * parsed in parallel on a fork-join pool; results keep file order.
+ */
+public class ChunkedLineReader {
+    private static final long CHUNK_BYTES = 4L * 1024 * 1024;
+    private static final int BOUNDARY_SCAN_BYTES = 4096;
+
+    /**
+     * Parse every line of the file
+     * Lines the parser maps to null (headers, comments, bad records) are dropped
+     */
+    public static <T> List<T> parse(Path file, Function<String, T> parser, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= CHUNK_BYTES) {
+                return parseStream(channel, parser);
+            }
+
+            List<Long> boundaries = findBoundaries(channel, size);
+            try {
+                return pool.invoke(new ChunkTask<>(channel, boundaries, 0, boundaries.size() - 1, parser));
+            } catch (UncheckedChunkException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static <T> List<T> parseStream(FileChannel channel, Function<String, T> parser) throws IOException {
+        List<T> results = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(Channels.newReader(channel, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            T value = parser.apply(line);
+            if (value != null) {
+                results.add(value);
+            }
+        }
+        return results;
+    }
+
+    // Chunk start offsets, each at the beginning of a line, ending with the file size
+    private static List<Long> findBoundaries(FileChannel channel, long size) throws IOException {
+        List<Long> boundaries = new ArrayList<>();
+        boundaries.add(0L);
+        ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_BYTES);
+        long nominal = CHUNK_BYTES;
+        while (nominal < size) {
+            long boundary = nextLineStart(channel, nominal, size, scan);
+            if (boundary >= size) {
+                break;
+            }
+            if (boundary > boundaries.get(boundaries.size() - 1)) {
+                boundaries.add(boundary);
+            }
+            nominal = Math.max(nominal + CHUNK_BYTES, boundary);
+        }
+        boundaries.add(size);
+        return boundaries;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size, ByteBuffer scan) throws IOException {
+        while (position < size) {
+            scan.clear();
+            int read = channel.read(scan, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (scan.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    // Carries an IOException out of a fork-join task
+    private static class UncheckedChunkException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UncheckedChunkException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    // Parses the chunks between two boundary indexes, splitting in half until one chunk remains
+    private static class ChunkTask<T> extends RecursiveTask<List<T>> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final List<Long> boundaries;
+        private final int first;
+        private final int last;
+        private final Function<String, T> parser;
+
+        ChunkTask(FileChannel channel, List<Long> boundaries, int first, int last, Function<String, T> parser) {
+            this.channel = channel;
+            this.boundaries = boundaries;
+            this.first = first;
+            this.last = last;
+            this.parser = parser;
+        }
+
+        @Override
+        protected List<T> compute() {
+            if (last - first > 1) {
+                int middle = (first + last) >>> 1;
+                ChunkTask<T> left = new ChunkTask<>(channel, boundaries, first, middle, parser);
+                ChunkTask<T> right = new ChunkTask<>(channel, boundaries, middle, last, parser);
+                left.fork();
+                List<T> results = right.compute();
+                List<T> combined = left.join();
+                combined.addAll(results);
+                return combined;
+            }
+
+            try {
+                return parseChunk(boundaries.get(first), boundaries.get(last));
+            } catch (IOException e) {
+                throw new UncheckedChunkException(e);
+            }
+        }
+
+        private List<T> parseChunk(long start, long end) throws IOException {
+            byte[] bytes = new byte[(int) (end - start)];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                // Positional reads do not move the shared channel position
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    break;
+                }
+            }
+
+            List<T> results = new ArrayList<>();
+            int lineStart = 0;
+            int length = buffer.position();
+            for (int i = 0; i <= length; i++) {
+                if (i == length || bytes[i] == '\n') {
+                    int lineEnd = (i > lineStart && bytes[i - 1] == '\r') ? i - 1 : i;
+                    if (i < length || lineEnd > lineStart) {
+                        T value = parser.apply(new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8));
+                        if (value != null) {
+                            results.add(value);
+                        }
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            return results;
+        }
+    }
+}
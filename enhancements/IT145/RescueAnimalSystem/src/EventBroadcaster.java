@@ -0,0 +1,154 @@
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fans server-sent events out to the open /api/stream connections.
+ * Each subscriber has a small bounded buffer that its connection drains; a
+ * subscriber that falls a full buffer behind is disconnected rather than
+ * allowed to hold events in memory, and reconnects to catch up. A heartbeat
+ * comment is sent periodically so idle connections stay open through proxies
+ * and dead ones are noticed. Publishing never blocks, so it is safe from
+ * inside the data manager's change listeners.
+ */
+public class EventBroadcaster {
+    private static final int CLIENT_BUFFER_EVENTS = 64;
+    private static final String HEARTBEAT_FRAME = ": heartbeat\n\n";
+    // Wakes a waiting connection so it sees it has been closed
+    private static final String CLOSE_FRAME = "";
+
+    // Open streams by session; tabs sharing a session cookie each have their own
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final Timer heartbeatTimer;
+
+    public EventBroadcaster(long heartbeatIntervalMs) {
+        heartbeatTimer = new Timer("event-stream-heartbeat", true);
+        heartbeatTimer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                broadcast(null, HEARTBEAT_FRAME);
+            }
+        }, heartbeatIntervalMs, heartbeatIntervalMs);
+    }
+
+    /**
+     * Register a stream for a session that receives the given event types
+     */
+    public Subscriber subscribe(String sessionId, Set<String> events) {
+        Subscriber subscriber = new Subscriber(sessionId, events);
+        subscribers.compute(sessionId, (key, streams) -> {
+            Set<Subscriber> open = streams != null ? streams : ConcurrentHashMap.newKeySet();
+            open.add(subscriber);
+            return open;
+        });
+        return subscriber;
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.computeIfPresent(subscriber.sessionId, (key, streams) -> {
+            streams.remove(subscriber);
+            return streams.isEmpty() ? null : streams;
+        });
+        subscriber.close();
+    }
+
+    /**
+     * Close every stream held by a session, e.g. on logout
+     */
+    public void disconnect(String sessionId) {
+        Set<Subscriber> streams = subscribers.remove(sessionId);
+        if (streams != null) {
+            streams.forEach(Subscriber::close);
+        }
+    }
+
+    /**
+     * Queue an event for every subscriber without blocking
+     * Safe to call while holding locks; multi-line data is split into data lines
+     */
+    public void publish(String event, String data) {
+        published.incrementAndGet();
+        broadcast(event, "event: " + event + "\ndata: " + data.replace("\n", "\ndata: ") + "\n\n");
+    }
+
+    // A null event is a heartbeat and goes to everyone
+    private void broadcast(String event, String frame) {
+        for (Set<Subscriber> streams : subscribers.values()) {
+            for (Subscriber subscriber : streams) {
+                if (event != null && !subscriber.events.contains(event)) {
+                    continue;
+                }
+                if (!subscriber.queue.offer(frame)) {
+                    // Slow consumer: drop it instead of buffering without bound
+                    evicted.incrementAndGet();
+                    unsubscribe(subscriber);
+                }
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        int count = 0;
+        for (Set<Subscriber> streams : subscribers.values()) {
+            count += streams.size();
+        }
+        return count;
+    }
+
+    /**
+     * Subscriber, published event and eviction counts as JSON
+     */
+    public String toJson() {
+        return String.format("{\"subscribers\": %d, \"published\": %d, \"evicted\": %d}",
+                             getSubscriberCount(), published.get(), evicted.get());
+    }
+
+    public void close() {
+        heartbeatTimer.cancel();
+        for (String sessionId : subscribers.keySet()) {
+            disconnect(sessionId);
+        }
+    }
+
+    /** One open stream and the frames waiting to be written to it */
+    public static class Subscriber {
+        private final String sessionId;
+        private final Set<String> events;
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(CLIENT_BUFFER_EVENTS);
+        private volatile boolean closed;
+
+        private Subscriber(String sessionId, Set<String> events) {
+            this.sessionId = sessionId;
+            this.events = events;
+        }
+
+        /**
+         * The next frame to write, or null if none arrived within the timeout or the stream was closed
+         */
+        public String next(long timeoutMs) throws InterruptedException {
+            String frame = closed ? null : queue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+            return closed ? null : frame;
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        private void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.clear();
+            queue.offer(CLOSE_FRAME);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+import java.io.Closeable;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Background writer that batches store flushes.
+ * Mutations mark their store dirty and return immediately; the writer thread
+ * waits one batch window to gather more mutations, then flushes each dirty
+ * store once and completes the future shared by everything in the batch.
+ */
+public class GroupCommitWriter implements Closeable {
+
+    public enum Store {
+        USERS,
+        ANIMALS,
+        ACTIVITIES,
+        LOCATIONS
+    }
+
+    /**
+     * Writes one store to disk; called only from the writer thread
+     */
+    public interface StoreFlusher {
+        void flush() throws Exception;
+    }
+
+    private final Map<Store, StoreFlusher> flushers = new EnumMap<>(Store.class);
+    private final long batchWindowMillis;
+    private final Thread writerThread;
+
+    private EnumSet<Store> dirtyStores = EnumSet.noneOf(Store.class);
+    private CompletableFuture<Void> pendingBatch;
+    // Batch being written right now; completes only once its stores are on disk
+    private CompletableFuture<Void> flushingBatch;
+    private boolean running = true;
+    // Held for the whole of a flush, so batches are written and completed in order
+    private final Object flushLock = new Object();
+
+    // Statistics
+    private long batchCount = 0;
+    private long requestCount = 0;
+
+    public GroupCommitWriter(Map<Store, StoreFlusher> flushers, long batchWindowMillis) {
+        this.flushers.putAll(flushers);
+        this.batchWindowMillis = batchWindowMillis;
+        this.writerThread = new Thread(this::runWriter, "group-commit-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Mark a store dirty
+     * Returns a future that completes once the store has been written, or a failed one if the writer has
+     * stopped. Never flushes on the caller's thread: callers hold the data manager's lock, which the
+     * flushers take while holding flushLock
+     */
+    public synchronized CompletableFuture<Void> submit(Store store) {
+        requestCount++;
+        dirtyStores.add(store);
+        if (!running) {
+            // Left dirty for a final drain by close() or whenFlushed()
+            CompletableFuture<Void> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new IllegalStateException("Group commit writer stopped"));
+            return rejected;
+        }
+        if (pendingBatch == null) {
+            pendingBatch = new CompletableFuture<>();
+            notifyAll();
+        }
+        return pendingBatch;
+    }
+
+    /**
+     * Future covering every mutation submitted so far, including a batch still being written
+     * If the writer has stopped, dirty stores are written on the caller's thread, so do not call this
+     * while holding the data manager's lock
+     */
+    public CompletableFuture<Void> whenFlushed() {
+        CompletableFuture<Void> batch;
+        synchronized (this) {
+            if (running || dirtyStores.isEmpty()) {
+                if (pendingBatch != null) {
+                    return pendingBatch;
+                }
+                return flushingBatch != null ? flushingBatch : CompletableFuture.completedFuture(null);
+            }
+            // Left dirty by an interrupted writer; nothing else will write it
+            if (pendingBatch == null) {
+                pendingBatch = new CompletableFuture<>();
+            }
+            batch = pendingBatch;
+        }
+        drainBatch();
+        return batch;
+    }
+
+    public synchronized long getBatchCount() {
+        return batchCount;
+    }
+
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Stop the writer thread after flushing anything still pending
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            running = false;
+            notifyAll();
+        }
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drainBatch();
+    }
+
+    private void runWriter() {
+        while (true) {
+            synchronized (this) {
+                while (running && pendingBatch == null) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        abandon(e);
+                        return;
+                    }
+                }
+                if (!running) {
+                    return;
+                }
+            }
+
+            // Let the rest of the burst arrive before writing anything
+            try {
+                Thread.sleep(batchWindowMillis);
+            } catch (InterruptedException e) {
+                abandon(e);
+                return;
+            }
+
+            drainBatch();
+        }
+    }
+
+    /**
+     * The writer thread was interrupted: fail the callers waiting on it rather than leave them hanging
+     * The stores stay dirty, so the next whenFlushed or close writes them on the caller's thread
+     */
+    private synchronized void abandon(InterruptedException cause) {
+        running = false;
+        if (pendingBatch != null) {
+            pendingBatch.completeExceptionally(new IllegalStateException("Group commit writer interrupted", cause));
+            pendingBatch = null;
+        }
+    }
+
+    private void drainBatch() {
+        synchronized (flushLock) {
+            EnumSet<Store> batch;
+            CompletableFuture<Void> batchFuture;
+            synchronized (this) {
+                if (dirtyStores.isEmpty()) {
+                    return;
+                }
+                batch = dirtyStores;
+                batchFuture = pendingBatch != null ? pendingBatch : new CompletableFuture<>();
+                dirtyStores = EnumSet.noneOf(Store.class);
+                pendingBatch = null;
+                flushingBatch = batchFuture;
+                batchCount++;
+            }
+
+            Exception failure = null;
+            for (Store store : batch) {
+                StoreFlusher flusher = flushers.get(store);
+                if (flusher == null) {
+                    continue;
+                }
+                try {
+                    flusher.flush();
+                } catch (Exception e) {
+                    System.err.println("Error flushing " + store + ": " + e.getMessage());
+                    failure = e;
+                }
+            }
+
+            synchronized (this) {
+                if (flushingBatch == batchFuture) {
+                    flushingBatch = null;
+                }
+            }
+            if (failure != null) {
+                batchFuture.completeExceptionally(failure);
+            } else {
+                batchFuture.complete(null);
+            }
+        }
+    }
+}
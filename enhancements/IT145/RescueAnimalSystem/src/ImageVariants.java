@@ -0,0 +1,281 @@
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Scaled copies of the animal photos for pages that show them small.
+ * Each variant is a JPEG in the cache directory named after the SHA-256
+ * of the source photo and the size, so replacing a photo produces new
+ * variants rather than serving stale ones, and identical photos share
+ * theirs. Variants are made on first request, or ahead of time by the
+ * pre-warm job, which also deletes variants of photos that are gone.
+ */
+public class ImageVariants {
+    /** Sizes that can be requested, by the longest side in pixels */
+    public enum Size {
+        THUMB(120),     // dashboard list, shown at 60px; twice that for high-density screens
+        MEDIUM(480),
+        FULL(0);        // the photo as uploaded
+
+        private final int maxDimension;
+
+        Size(int maxDimension) {
+            this.maxDimension = maxDimension;
+        }
+
+        /** The size named in a URL path segment, or null */
+        public static Size fromPath(String segment) {
+            for (Size size : values()) {
+                if (size.name().equalsIgnoreCase(segment)) {
+                    return size;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final float JPEG_QUALITY = 0.85f;
+
+    private final Path sourceRoot;
+    private final Path cacheDir;
+    // Source hashes, recomputed only when a photo's size or modification time changes
+    private final Map<Path, SourceHash> hashes = new ConcurrentHashMap<>();
+    // Variants being made right now; concurrent requests for a new photo wait for the one scaling it
+    private final Map<Path, CompletableFuture<Path>> generating = new ConcurrentHashMap<>();
+    // Variants with no file of their own because the photo is already that small or cannot be decoded,
+    // so later requests serve the photo without reading it again
+    private final Set<Path> servedAsSource = ConcurrentHashMap.newKeySet();
+
+    public ImageVariants(Path sourceRoot, Path cacheDir) throws IOException {
+        this.sourceRoot = sourceRoot.toAbsolutePath().normalize();
+        this.cacheDir = cacheDir.toAbsolutePath().normalize();
+        Files.createDirectories(this.cacheDir);
+    }
+
+    public Path getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * The file to serve for a photo at a size: a cached variant, made now if needed,
+     * or the photo itself when it is already that small or cannot be decoded
+     */
+    public Path variant(Path source, Size size) throws IOException {
+        if (size == Size.FULL) {
+            return source;
+        }
+        Path target = cacheDir.resolve(hash(source) + "-" + size.name().toLowerCase(Locale.ROOT) + ".jpg");
+        if (servedAsSource.contains(target)) {
+            return source;
+        }
+        if (Files.exists(target)) {
+            return target;
+        }
+
+        CompletableFuture<Path> made = new CompletableFuture<>();
+        CompletableFuture<Path> inProgress = generating.putIfAbsent(target, made);
+        if (inProgress != null) {
+            return await(inProgress);
+        }
+        try {
+            // Another request may have finished it between the checks above and claiming it
+            Path result = target;
+            if (servedAsSource.contains(target)) {
+                result = source;
+            } else if (!Files.exists(target) && !generate(source, target, size.maxDimension)) {
+                servedAsSource.add(target);
+                result = source;
+            }
+            made.complete(result);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            made.completeExceptionally(e);
+            throw e;
+        } finally {
+            generating.remove(target, made);
+        }
+    }
+
+    private static Path await(CompletableFuture<Path> variant) throws IOException {
+        try {
+            return variant.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Make every photo's variants on a background thread, then remove variants no photo needs
+     */
+    public void prewarmAsync() {
+        Thread thread = new Thread(this::prewarm, "image-prewarm");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    private void prewarm() {
+        Set<String> live = new HashSet<>();
+        int made = 0;
+        try (Stream<Path> files = Files.walk(sourceRoot)) {
+            for (Iterator<Path> it = files.filter(Files::isRegularFile).iterator(); it.hasNext(); ) {
+                Path source = it.next();
+                try {
+                    live.add(hash(source));
+                    for (Size size : Size.values()) {
+                        if (size != Size.FULL && !variant(source, size).equals(source)) {
+                            made++;
+                        }
+                    }
+                } catch (IOException e) {
+                    System.err.println("Error preparing images for " + source + ": " + e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error pre-warming images: " + e.getMessage());
+            return;
+        }
+
+        try (Stream<Path> variants = Files.list(cacheDir)) {
+            variants.filter(file -> file.getFileName().toString().endsWith(".jpg"))
+                    .filter(file -> !live.contains(file.getFileName().toString().split("-")[0]))
+                    .forEach(this::deleteQuietly);
+        } catch (IOException e) {
+            System.err.println("Error cleaning image cache: " + e.getMessage());
+        }
+        servedAsSource.removeIf(target -> !live.contains(target.getFileName().toString().split("-")[0]));
+        System.out.println("Image variants ready: " + made);
+    }
+
+    // Scale the photo to fit within maxDimension; false if it is already small enough or unreadable
+    private boolean generate(Path source, Path target, int maxDimension) throws IOException {
+        BufferedImage image = ImageIO.read(source.toFile());
+        if (image == null) {
+            return false;
+        }
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double scale = (double) maxDimension / Math.max(width, height);
+        if (scale >= 1) {
+            return false;
+        }
+        BufferedImage scaled = scale(image, Math.max(1, (int) Math.round(width * scale)),
+                                     Math.max(1, (int) Math.round(height * scale)));
+
+        // Written beside the target and moved into place, so a reader never sees half a file
+        Path temp = Files.createTempFile(cacheDir, "variant", ".tmp");
+        try {
+            writeJpeg(scaled, temp);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return true;
+    }
+
+    // Halve repeatedly, then make one last bilinear step; a single large step would alias
+    private static BufferedImage scale(BufferedImage image, int width, int height) {
+        BufferedImage current = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            BufferedImage step = new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = step.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            graphics.dispose();
+            current = step;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static void writeJpeg(BufferedImage image, Path file) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(file.toFile())) {
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(JPEG_QUALITY);
+            writer.setOutput(out);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private String hash(Path source) throws IOException {
+        long size = Files.size(source);
+        long modified = Files.getLastModifiedTime(source).toMillis();
+        SourceHash known = hashes.get(source);
+        if (known != null && known.size == size && known.modified == modified) {
+            return known.hash;
+        }
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream in = new DigestInputStream(Files.newInputStream(source), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        }
+        StringBuilder hex = new StringBuilder();
+        byte[] bytes = digest.digest();
+        // 128 bits is plenty to tell photos apart and keeps file names short
+        for (int i = 0; i < 16; i++) {
+            hex.append(String.format("%02x", bytes[i]));
+        }
+        String hash = hex.toString();
+        hashes.put(source, new SourceHash(size, modified, hash));
+        return hash;
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Error deleting " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static final class SourceHash {
+        final long size;
+        final long modified;
+        final String hash;
+
+        SourceHash(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+import java.io.IOException;
+
+/**
+ * Writes one type of value as JSON.
+ * Codecs for the system's types are in JsonCodecs.
+ */
+@FunctionalInterface
+public interface JsonCodec<T> {
+    void write(JsonWriter json, T value) throws IOException;
+}
@@ -0,0 +1,146 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * Timing harness comparing the JSON codecs with the string building they
+ * replaced. Each round serializes the same animal roster and activity list
+ * to UTF-8 bytes both ways, and once more streamed through a JsonWriter
+ * with no body held in memory, as /api/activities, /api/users and
+ * /api/sessions send theirs. After warm-up rounds it reports the mean time
+ * and bytes allocated per body. The old builders are copied here unchanged,
+ * including their lack of escaping. A rough guide rather than a JMH result:
+ *     java -cp bin JsonCodecBenchmark [records] [rounds]
+ */
+public class JsonCodecBenchmark {
+    private static final UnaryOperator<String> LOCATION = name -> "Kennel 4";
+
+    public static void main(String[] args) throws IOException {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        List<RescueAnimal> animals = new ArrayList<>(records);
+        List<Activity> activities = new ArrayList<>(records);
+        for (int i = 0; i < records; i++) {
+            switch (i % 3) {
+                case 0:
+                    animals.add(new Dog("Dog" + i, "Labrador", "male", "2", "30", "01-01-2024",
+                                        "United States", "in service", i % 5 == 0, "Canada"));
+                    break;
+                case 1:
+                    animals.add(new Cat("Cat" + i, "Siamese", "cream", false, "female", "3", "4",
+                                        "01-01-2024", "United States", "Phase II", false, "Canada"));
+                    break;
+                default:
+                    animals.add(new Monkey("Monkey" + i, "male", "4", "8", "Capuchin", "40", "50", "45",
+                                           "01-01-2024", "Brazil", "in service", false, "Canada"));
+            }
+            activities.add(new Activity("Dog" + i, "Dog", "CHECKUP", "Routine health check number " + i,
+                                        "Intake Facility", "admin"));
+        }
+
+        JsonCodec<RescueAnimal> animalCodec = JsonCodecs.animals(LOCATION);
+        System.out.println(String.format("%d records, %d rounds after warm-up", records, rounds));
+        report("animals, string building", rounds, () -> oldAnimals(animals));
+        report("animals, codecs", rounds, () -> JsonWriter.toBytes(json -> {
+            json.beginArray();
+            for (RescueAnimal animal : animals) {
+                animalCodec.write(json, animal);
+            }
+            json.endArray();
+        }));
+        report("activities, string building", rounds, () -> oldActivities(activities));
+        JsonWriter.Document activityList = json -> {
+            json.beginArray();
+            for (Activity activity : activities) {
+                JsonCodecs.ACTIVITY.write(json, activity);
+            }
+            json.endArray();
+        };
+        report("activities, codecs", rounds, () -> JsonWriter.toBytes(activityList));
+        report("activities, codecs streamed", rounds, () -> {
+            try (JsonWriter json = new JsonWriter(OutputStream.nullOutputStream())) {
+                activityList.write(json);
+            }
+            return new byte[0];
+        });
+    }
+
+    private interface Body {
+        byte[] build() throws IOException;
+    }
+
+    private static void report(String label, int rounds, Body body) throws IOException {
+        long size = 0;
+        for (int i = 0; i < rounds; i++) {
+            size = Math.max(size, body.build().length);
+        }
+        com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            body.build();
+        }
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        System.out.println(String.format("  %-30s %8.3f ms/body  %8d KB allocated/body  %s",
+                           label, elapsed / 1e6 / rounds, allocated / rounds / 1024,
+                           size > 0 ? size / 1024 + " KB body" : "streamed"));
+    }
+
+    // The serializeAnimals and appendAnimalJson builders the codecs replaced
+    private static byte[] oldAnimals(List<RescueAnimal> animals) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < animals.size(); i++) {
+            RescueAnimal animal = animals.get(i);
+            json.append("{");
+            json.append("\"name\": \"").append(animal.getName()).append("\",");
+            if (animal instanceof Dog) {
+                json.append("\"breed\": \"").append(((Dog) animal).getBreed()).append("\",");
+            } else if (animal instanceof Cat) {
+                json.append("\"breed\": \"").append(((Cat) animal).getBreed()).append("\",");
+            } else if (animal instanceof Rabbit) {
+                json.append("\"breed\": \"").append(((Rabbit) animal).getBreed()).append("\",");
+            } else if (animal instanceof Monkey) {
+                json.append("\"species\": \"").append(((Monkey) animal).getSpecies()).append("\",");
+            } else if (animal instanceof Bird) {
+                json.append("\"species\": \"").append(((Bird) animal).getSpecies()).append("\",");
+            }
+            json.append("\"gender\": \"").append(animal.getGender()).append("\",");
+            json.append("\"age\": \"").append(animal.getAge()).append("\",");
+            json.append("\"weight\": \"").append(animal.getWeight()).append("\",");
+            json.append("\"trainingStatus\": \"").append(animal.getTrainingStatus()).append("\",");
+            json.append("\"reserved\": ").append(animal.getReserved()).append(",");
+            json.append("\"location\": \"").append(LOCATION.apply(animal.getName())).append("\"");
+            json.append("}");
+            if (i < animals.size() - 1) json.append(",");
+        }
+        json.append("]");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // The appendActivityJson builder the codecs replaced
+    private static byte[] oldActivities(List<Activity> activities) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < activities.size(); i++) {
+            Activity activity = activities.get(i);
+            json.append("{");
+            json.append("\"animalName\": \"").append(activity.getAnimalName()).append("\",");
+            json.append("\"animalType\": \"").append(activity.getAnimalType()).append("\",");
+            json.append("\"activityType\": \"").append(activity.getActivityType()).append("\",");
+            json.append("\"description\": \"").append(activity.getDescription()).append("\",");
+            json.append("\"location\": \"").append(activity.getLocation()).append("\",");
+            json.append("\"performedBy\": \"").append(activity.getPerformedBy()).append("\",");
+            json.append("\"timestamp\": \"").append(activity.getTimestamp()).append("\"");
+            json.append("}");
+            if (i < activities.size() - 1) json.append(",");
+        }
+        json.append("]");
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
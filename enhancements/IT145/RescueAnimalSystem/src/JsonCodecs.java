@@ -0,0 +1,87 @@
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * JSON codecs for the types the web API returns, one per type.
+ * Each codec writes its fields directly with a JsonWriter, so no
+ * intermediate strings are built and every string value is escaped.
+ */
+public final class JsonCodecs {
+    public static final JsonCodec<Activity> ACTIVITY = (json, activity) -> {
+        json.beginObject();
+        json.name("animalName").value(activity.getAnimalName());
+        json.name("animalType").value(activity.getAnimalType());
+        json.name("activityType").value(activity.getActivityType());
+        json.name("description").value(activity.getDescription());
+        json.name("location").value(activity.getLocation());
+        json.name("performedBy").value(activity.getPerformedBy());
+        json.name("timestamp").value(activity.getTimestamp());
+        json.endObject();
+    };
+
+    public static final JsonCodec<User.UserInfo> USER_INFO = (json, user) -> {
+        json.beginObject();
+        json.name("username").value(user.getUsername());
+        json.name("fullName").value(user.getFullName());
+        json.name("role").value(user.getRole());
+        json.name("active").value(user.isActive());
+        json.endObject();
+    };
+
+    public static final JsonCodec<AuthenticationSystem.SessionInfo> SESSION_INFO = (json, session) -> {
+        json.beginObject();
+        json.name("sessionId").value(session.getSessionId());
+        json.name("username").value(session.getUsername());
+        json.name("fullName").value(session.getFullName());
+        json.name("createdTime").value(session.getCreatedTime());
+        json.name("lastAccess").value(session.getLastAccess());
+        json.endObject();
+    };
+
+    private JsonCodecs() {
+    }
+
+    /**
+     * Codec for any rescue animal, dispatching to the codec for its subclass
+     * Dogs, cats and rabbits carry a breed, monkeys and birds a species; the
+     * location is looked up by animal name since it is tracked outside the animal
+     */
+    public static JsonCodec<RescueAnimal> animals(UnaryOperator<String> locations) {
+        Map<Class<?>, JsonCodec<RescueAnimal>> byType = new HashMap<>();
+        byType.put(Dog.class, animal(locations, "breed", (Dog dog) -> dog.getBreed()));
+        byType.put(Cat.class, animal(locations, "breed", (Cat cat) -> cat.getBreed()));
+        byType.put(Rabbit.class, animal(locations, "breed", (Rabbit rabbit) -> rabbit.getBreed()));
+        byType.put(Monkey.class, animal(locations, "species", (Monkey monkey) -> monkey.getSpecies()));
+        byType.put(Bird.class, animal(locations, "species", (Bird bird) -> bird.getSpecies()));
+        JsonCodec<RescueAnimal> common = animal(locations, null, null);
+        return (json, animal) -> byType.getOrDefault(animal.getClass(), common).write(json, animal);
+    }
+
+    // Codec for one subclass; the detail field follows the name, as the dashboard has always received it
+    @SuppressWarnings("unchecked")
+    private static <T extends RescueAnimal> JsonCodec<RescueAnimal> animal(UnaryOperator<String> locations,
+                                                                           String detailName,
+                                                                           Function<T, String> detail) {
+        return (json, animal) -> {
+            json.beginObject();
+            json.name("name").value(animal.getName());
+            if (detail != null) {
+                json.name(detailName).value(detail.apply((T) animal));
+            }
+            writeAnimalFields(json, animal);
+            json.name("location").value(locations.apply(animal.getName()));
+            json.endObject();
+        };
+    }
+
+    private static void writeAnimalFields(JsonWriter json, RescueAnimal animal) throws IOException {
+        json.name("gender").value(animal.getGender());
+        json.name("age").value(animal.getAge());
+        json.name("weight").value(animal.getWeight());
+        json.name("trainingStatus").value(animal.getTrainingStatus());
+        json.name("reserved").value(animal.getReserved());
+    }
+}
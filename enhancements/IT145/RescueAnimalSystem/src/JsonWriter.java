@@ -0,0 +1,242 @@
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes JSON straight to an output stream as UTF-8, one buffer at a time.
+ * Strings are escaped and encoded as they are written, so a response of any
+ * length needs no more memory than the buffer. Commas between members and
+ * array elements are inserted automatically. The buffer is borrowed from
+ * the calling thread and handed back on close, so a pooled request thread
+ * reuses one buffer for every response it writes.
+ */
+public class JsonWriter implements Closeable {
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    // Taken while a writer is open, so a nested writer on the same thread allocates its own
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<>();
+
+    private final OutputStream out;
+    private byte[] buffer;
+    private int position;
+
+    // Whether the object or array open at each depth already has an element
+    private boolean[] hasElement = new boolean[16];
+    private int depth;
+    private boolean afterName;
+
+    public JsonWriter(OutputStream out) {
+        this.out = out;
+        byte[] reused = BUFFERS.get();
+        if (reused != null) {
+            BUFFERS.remove();
+            buffer = reused;
+        } else {
+            buffer = new byte[BUFFER_SIZE];
+        }
+    }
+
+    /**
+     * Write a small document into a byte array, e.g. a cached body or an event
+     */
+    public static byte[] toBytes(Document document) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (JsonWriter json = new JsonWriter(bytes)) {
+            document.write(json);
+        }
+        return bytes.toByteArray();
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        return open('{');
+    }
+
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        return open('[');
+    }
+
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    /**
+     * Start a member of the current object; the next value written is its value
+     */
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        writeString(name);
+        writeByte(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            writeAscii("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        writeAscii(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * Object values are written with toString, e.g. enums and timestamps
+     */
+    public JsonWriter value(Object value) throws IOException {
+        return value(value == null ? null : value.toString());
+    }
+
+    public void flush() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            BUFFERS.set(buffer);
+            buffer = null;
+            out.close();
+        }
+    }
+
+    private JsonWriter open(char bracket) throws IOException {
+        separate();
+        writeByte(bracket);
+        if (++depth == hasElement.length) {
+            hasElement = Arrays.copyOf(hasElement, depth * 2);
+        }
+        hasElement[depth] = false;
+        return this;
+    }
+
+    private JsonWriter close(char bracket) throws IOException {
+        depth--;
+        writeByte(bracket);
+        return this;
+    }
+
+    // Write the comma before an element, unless it is the first one or follows its name
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (hasElement[depth]) {
+            writeByte(',');
+        }
+        hasElement[depth] = true;
+    }
+
+    private void writeString(String value) throws IOException {
+        writeByte('"');
+        int length = value.length();
+        int i = 0;
+        // Fast path: copy plain ASCII straight into the buffer until something needs escaping or encoding
+        if (length <= buffer.length) {
+            if (buffer.length - position < length) {
+                out.write(buffer, 0, position);
+                position = 0;
+            }
+            for (; i < length; i++) {
+                char c = value.charAt(i);
+                if (c < 0x20 || c >= 0x80 || c == '"' || c == '\\') {
+                    break;
+                }
+                buffer[position++] = (byte) c;
+            }
+        }
+        for (; i < length; i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                writeByte('\\');
+                writeByte(c);
+            } else if (c < 0x20) {
+                writeControl(c);
+            } else if (c < 0x80) {
+                writeByte(c);
+            } else if (c < 0x800) {
+                writeByte(0xc0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                       && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                writeByte(0xf0 | (codePoint >> 18));
+                writeByte(0x80 | ((codePoint >> 12) & 0x3f));
+                writeByte(0x80 | ((codePoint >> 6) & 0x3f));
+                writeByte(0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate: not encodable, so substitute as String.getBytes would
+                writeByte('?');
+            } else {
+                writeByte(0xe0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3f));
+                writeByte(0x80 | (c & 0x3f));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeControl(char c) throws IOException {
+        writeByte('\\');
+        switch (c) {
+            case '\n': writeByte('n'); break;
+            case '\r': writeByte('r'); break;
+            case '\t': writeByte('t'); break;
+            case '\b': writeByte('b'); break;
+            case '\f': writeByte('f'); break;
+            default:
+                writeAscii("u00");
+                writeByte(HEX[c >> 4]);
+                writeByte(HEX[c & 0xf]);
+        }
+    }
+
+    private void writeAscii(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            writeByte(text.charAt(i));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    /** Writes a whole JSON document, e.g. a response body */
+    @FunctionalInterface
+    public interface Document {
+        void write(JsonWriter json) throws IOException;
+    }
+}
@@ -45,7 +45,7 @@ public class MonitoringSystem {
         
         List<Activity> activities = new ArrayList<>();
         if (dataManager != null) {
-            activities = dataManager.getActivities();
+            activities = dataManager.getActivitiesNewestFirst();
         }
             
         if (activities.isEmpty()) {
@@ -53,9 +53,6 @@ public class MonitoringSystem {
             return;
         }
         
-        // Sort by timestamp (newest first)
-        activities.sort((a1, a2) -> a2.getTimestamp().compareTo(a1.getTimestamp()));
-        
         for (Activity activity : activities) {
             System.out.println(activity);
         }
@@ -88,23 +85,13 @@ public class MonitoringSystem {
      * Returns activities for the given animal name
      */
     public List<Activity> getAnimalActivities(String animalName) {
-        List<Activity> animalActivities = new ArrayList<>();
-        
-        List<Activity> allActivities = new ArrayList<>();
-        if (dataManager != null) {
-            allActivities = dataManager.getActivities();
-        }
-        
-        for (Activity activity : allActivities) {
-            if (activity.getAnimalName().equalsIgnoreCase(animalName)) {
-                animalActivities.add(activity);
-            }
+        if (dataManager == null) {
+            return new ArrayList<>();
         }
         
-        // Sort by timestamp (newest first)
-        animalActivities.sort((a1, a2) -> a2.getTimestamp().compareTo(a1.getTimestamp()));
-        
-        return animalActivities;
+        // Streamed from the activity log newest first; only matches are kept
+        return dataManager.findActivities(
+            activity -> activity.getAnimalName().equalsIgnoreCase(animalName));
     }
     
     /**
@@ -166,6 +153,17 @@ public class MonitoringSystem {
         return new ArrayList<>();
     }
     
+    /**
+     * Get all activities ordered newest first
+     * Read from the activity log in reverse, so no sort is needed
+     */
+    public List<Activity> getAllActivitiesNewestFirst() {
+        if (dataManager != null) {
+            return dataManager.getActivitiesNewestFirst();
+        }
+        return new ArrayList<>();
+    }
+    
     /**
      * Get all animal locations from the database
      * Used by web interface and reporting
@@ -182,19 +180,12 @@ public class MonitoringSystem {
      * Useful for filtering activities (e.g., only INTAKE, only LOCATION_UPDATE, etc.)
      */
     public List<Activity> getActivitiesByType(String activityType) {
-        List<Activity> filteredActivities = new ArrayList<>();
-        
-        List<Activity> allActivities = getAllActivities();
-        for (Activity activity : allActivities) {
-            if (activity.getActivityType().equalsIgnoreCase(activityType)) {
-                filteredActivities.add(activity);
-            }
+        if (dataManager == null) {
+            return new ArrayList<>();
         }
         
-        // Sort by timestamp (newest first)
-        filteredActivities.sort((a1, a2) -> a2.getTimestamp().compareTo(a1.getTimestamp()));
-        
-        return filteredActivities;
+        // Day segments that never saw the type are skipped unread
+        return dataManager.getActivitiesByType(activityType);
     }
     
     /**
@@ -202,19 +193,11 @@ public class MonitoringSystem {
      * Useful for tracking which user performed which actions
      */
     public List<Activity> getActivitiesByPerformer(String performedBy) {
-        List<Activity> userActivities = new ArrayList<>();
-        
-        List<Activity> allActivities = getAllActivities();
-        for (Activity activity : allActivities) {
-            if (activity.getPerformedBy().equalsIgnoreCase(performedBy)) {
-                userActivities.add(activity);
-            }
+        if (dataManager == null) {
+            return new ArrayList<>();
         }
         
-        // Sort by timestamp (newest first)
-        userActivities.sort((a1, a2) -> a2.getTimestamp().compareTo(a1.getTimestamp()));
-        
-        return userActivities;
+        return dataManager.getActivitiesByPerformer(performedBy);
     }
     
     /**
@@ -222,21 +205,13 @@ public class MonitoringSystem {
      * Useful for dashboard widgets showing recent system activity
      */
     public List<Activity> getRecentActivities(int days) {
-        List<Activity> recentActivities = new ArrayList<>();
-        
-        LocalDateTime cutoffDate = LocalDateTime.now().minusDays(days);
-        List<Activity> allActivities = getAllActivities();
-        
-        for (Activity activity : allActivities) {
-            if (activity.getTimestamp().isAfter(cutoffDate)) {
-                recentActivities.add(activity);
-            }
+        if (dataManager == null) {
+            return new ArrayList<>();
         }
         
-        // Sort by timestamp (newest first)
-        recentActivities.sort((a1, a2) -> a2.getTimestamp().compareTo(a1.getTimestamp()));
-        
-        return recentActivities;
+        // Day segments that end before the cutoff are skipped; results are already newest first
+        LocalDateTime cutoffDate = LocalDateTime.now().minusDays(days);
+        return dataManager.getActivitiesSince(cutoffDate);
     }
     
     /**
@@ -246,11 +221,12 @@ public class MonitoringSystem {
     public Map<String, Integer> getActivityStatistics() {
         Map<String, Integer> stats = new HashMap<>();
         
-        List<Activity> allActivities = getAllActivities();
-        
-        for (Activity activity : allActivities) {
-            String type = activity.getActivityType();
-            stats.put(type, stats.getOrDefault(type, 0) + 1);
+        if (dataManager != null) {
+            // Counted while streaming, so the history is never held in memory
+            dataManager.forEachActivity(activity -> {
+                String type = activity.getActivityType();
+                stats.put(type, stats.getOrDefault(type, 0) + 1);
+            });
         }
         
         return stats;
@@ -0,0 +1,79 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * CRC32C checksums for line records.
+ * A sealed line is the record, a tab and the record's checksum as eight hex
+ * digits. Lines written before checksums were added have no suffix and are
+ * accepted as they are. Records that fail the check are set aside in a
+ * quarantine directory next to their file instead of being dropped silently.
+ */
+public class RecordChecksum {
+    public static final char SEPARATOR = '\t';
+    public static final int SUFFIX_BYTES = 9;
+
+    public static String seal(String record) {
+        return record + SEPARATOR + toHex(checksum(record));
+    }
+
+    /**
+     * The record with its checksum verified and removed
+     * Returns the line unchanged if it has no checksum, or null if the checksum does not match
+     */
+    public static String unseal(String line) {
+        if (!isSealed(line)) {
+            return line;
+        }
+        String record = line.substring(0, line.length() - SUFFIX_BYTES);
+        long expected = Long.parseLong(line.substring(line.length() - 8), 16);
+        return expected == checksum(record) ? record : null;
+    }
+
+    public static boolean isSealed(String line) {
+        int length = line.length();
+        if (length < SUFFIX_BYTES || line.charAt(length - SUFFIX_BYTES) != SEPARATOR) {
+            return false;
+        }
+        for (int i = length - 8; i < length; i++) {
+            if (Character.digit(line.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static long checksum(String record) {
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        return checksum(bytes, 0, bytes.length);
+    }
+
+    public static long checksum(byte[] bytes, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, offset, length);
+        return crc.getValue();
+    }
+
+    public static String toHex(long checksum) {
+        return String.format("%08x", checksum);
+    }
+
+    /**
+     * Keep a rejected record in quarantine/<file>.rejected beside the file it came from
+     */
+    public static synchronized void quarantine(Path source, String line) {
+        Path directory = source.toAbsolutePath().resolveSibling("quarantine");
+        Path target = directory.resolve(source.getFileName() + ".rejected");
+        try {
+            Files.createDirectories(directory);
+            Files.write(target, (line + "\n").getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            System.err.println("Quarantined damaged record from " + source + " to " + target);
+        } catch (IOException e) {
+            System.err.println("Error quarantining record from " + source + ": " + e.getMessage());
+        }
+    }
+}
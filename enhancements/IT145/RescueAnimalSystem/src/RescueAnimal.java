@@ -1,3 +1,5 @@
+import java.util.concurrent.atomic.AtomicBoolean;
+
 public class RescueAnimal {
     // Instance variables
     private String name;
@@ -7,8 +9,9 @@ public class RescueAnimal {
     private String weight;
     private String acquisitionDate;
     private String acquisitionCountry;
-    private String trainingStatus;
-    private boolean reserved;
+    private volatile String trainingStatus;
+    // Compare-and-set so concurrent requests cannot both reserve the animal
+    private final AtomicBoolean reserved = new AtomicBoolean();
     private String inServiceCountry;
 
     // Default Constructor
@@ -27,7 +30,7 @@ public class RescueAnimal {
         this.acquisitionDate = acquisitionDate;
         this.acquisitionCountry = acquisitionCountry;
         this.trainingStatus = trainingStatus;
-        this.reserved = reserved;
+        this.reserved.set(reserved);
         this.inServiceCountry = inServiceCountry;
     }
 
@@ -89,11 +92,27 @@ public class RescueAnimal {
     }
 
     public boolean getReserved() {
-        return reserved;
+        return reserved.get();
     }
 
     public void setReserved(boolean reserved) {
-        this.reserved = reserved;
+        this.reserved.set(reserved);
+    }
+
+    /**
+     * Reserve the animal if it is not already reserved
+     * Returns false if another request reserved it first
+     */
+    public boolean tryReserve() {
+        return reserved.compareAndSet(false, true);
+    }
+
+    /**
+     * Cancel the reservation if there is one
+     * Returns false if the animal was not reserved, or another request cancelled it first
+     */
+    public boolean tryCancelReservation() {
+        return reserved.compareAndSet(true, false);
     }
 
     public String getInServiceLocation() {
@@ -114,7 +133,7 @@ public class RescueAnimal {
 
     // Utility methods
     public boolean isAvailable() {
-        return !reserved && "in service".equalsIgnoreCase(trainingStatus);
+        return !reserved.get() && "in service".equalsIgnoreCase(trainingStatus);
     }
 
     public void updateTrainingStatus(String newStatus) {
@@ -124,6 +143,6 @@ public class RescueAnimal {
     @Override
     public String toString() {
         return String.format("%s: %s (%s, %s years, %s, Training: %s, Reserved: %s)", 
-                           animalType, name, gender, age, weight, trainingStatus, reserved);
+                           animalType, name, gender, age, weight, trainingStatus, reserved.get());
     }
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stress check for concurrent reservations: many threads reserve the same
+ * pool of animals at once, half by type and country and half by name, and
+ * the run fails if any animal is handed out twice or any is left unreserved.
+ * It creates its own data directory, so run it from an empty directory:
+ *     java -cp bin ReservationStressTest [animals] [threads]
+ */
+public class ReservationStressTest {
+    private static final String COUNTRY = "Stressland";
+
+    public static void main(String[] args) throws Exception {
+        int animals = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        if (Files.exists(Paths.get("data"))) {
+            System.err.println("Run from an empty directory; ./data already exists and would be modified");
+            System.exit(2);
+        }
+
+        SimpleDataManager dataManager = new SimpleDataManager();
+        MonitoringSystem monitoringSystem = new MonitoringSystem(dataManager);
+        AnimalService animalService = new AnimalService(monitoringSystem, dataManager);
+        ReservationService reservationService = new ReservationService(animalService, monitoringSystem);
+        for (int i = 0; i < animals; i++) {
+            animalService.addDog(new Dog("Stress" + i, "Labrador", "male", "2", "30", "01-01-2024",
+                                         "United States", "in service", false, COUNTRY), "stress");
+        }
+
+        // Every successful reservation, by animal; each must end at exactly one
+        Map<String, AtomicInteger> reservations = new ConcurrentHashMap<>();
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        long began = System.nanoTime();
+        try {
+            for (int t = 0; t < threads; t++) {
+                pool.execute(() -> {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    // Twice as many attempts as animals, so every animal is contended for
+                    while (attempts.incrementAndGet() <= animals * 2) {
+                        String reserved;
+                        if (random.nextBoolean()) {
+                            RescueAnimal animal = animalService.reserveAvailable("Dog", COUNTRY);
+                            reserved = animal != null ? animal.getName() : null;
+                        } else {
+                            String name = "Stress" + random.nextInt(animals);
+                            reserved = reservationService.reserveSpecificAnimal(name, "stress") ? name : null;
+                        }
+                        if (reserved != null) {
+                            reservations.computeIfAbsent(reserved, key -> new AtomicInteger()).incrementAndGet();
+                        }
+                    }
+                });
+            }
+            start.countDown();
+            pool.shutdown();
+            pool.awaitTermination(5, TimeUnit.MINUTES);
+        } finally {
+            System.setOut(console);
+        }
+        long elapsedMs = (System.nanoTime() - began) / 1_000_000;
+
+        // Whatever the race left is reserved by type; the index must still offer each of those exactly once
+        int leftOver = 0;
+        RescueAnimal remaining;
+        while ((remaining = animalService.reserveAvailable("Dog", COUNTRY)) != null) {
+            reservations.computeIfAbsent(remaining.getName(), key -> new AtomicInteger()).incrementAndGet();
+            leftOver++;
+        }
+
+        int failures = 0;
+        for (Map.Entry<String, AtomicInteger> entry : reservations.entrySet()) {
+            if (entry.getValue().get() != 1) {
+                System.out.println("DOUBLE BOOKED: " + entry.getKey() + " reserved " + entry.getValue().get() + " times");
+                failures++;
+            }
+        }
+        int reserved = animalService.getReservedAnimals();
+        if (reservations.size() != animals || reserved != animals) {
+            System.out.println("MISMATCH: " + animals + " animals, " + reservations.size()
+                               + " reserved by callers, " + reserved + " marked reserved");
+            failures++;
+        }
+
+        System.out.println(String.format("%d animals, %d threads, %d attempts in %d ms: %d reserved during the run, %s",
+                           animals, threads, animals * 2, elapsedMs, reservations.size() - leftOver,
+                           failures == 0 ? "no double bookings" : failures + " failure(s)"));
+        dataManager.close();
+        System.exit(failures == 0 ? 0 : 1);
+    }
+}
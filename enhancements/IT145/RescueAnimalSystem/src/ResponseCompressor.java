@@ -0,0 +1,174 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Gzip and deflate compression for response bodies.
+ * Deflaters are expensive to create and hold native memory, so finished
+ * ones are reset and pooled rather than thrown away. Bodies smaller than
+ * the minimum size are not worth the CPU or the extra headers and are
+ * sent as they are. The level trades CPU for bandwidth: 1 is fastest,
+ * 9 smallest, and 0 turns compression off.
+ */
+public class ResponseCompressor {
+    public static final int DEFAULT_LEVEL = 6;
+    public static final int DEFAULT_MIN_SIZE = 1024;
+
+    private static final int POOL_SIZE = 32;
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private final int level;
+    private final int minSize;
+    // Gzip wraps raw deflate data in its own header, deflate uses the zlib wrapper
+    private final BlockingQueue<Deflater> rawDeflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+    private final BlockingQueue<Deflater> zlibDeflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    public ResponseCompressor() {
+        this(DEFAULT_LEVEL, DEFAULT_MIN_SIZE);
+    }
+
+    public ResponseCompressor(int level, int minSize) {
+        if (level < 0 || level > 9) {
+            throw new IllegalArgumentException("Compression level must be 0-9: " + level);
+        }
+        this.level = level;
+        this.minSize = minSize;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * The encoding to use for a request's Accept-Encoding header, preferring gzip, or null to send the body as it is
+     */
+    public String choose(String acceptEncoding) {
+        if (level == 0) {
+            return null;
+        }
+        if (accepts(acceptEncoding, "gzip")) {
+            return "gzip";
+        }
+        if (accepts(acceptEncoding, "deflate")) {
+            return "deflate";
+        }
+        return null;
+    }
+
+    /**
+     * Whether a body of this size should be compressed at all
+     */
+    public boolean worthCompressing(long size) {
+        return level > 0 && size >= minSize;
+    }
+
+    /**
+     * Compress a whole body with the given encoding
+     */
+    public byte[] compress(byte[] body, String encoding) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 2 + 64);
+        try (OutputStream out = wrap(bytes, encoding)) {
+            out.write(body);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A stream that compresses into out with the given encoding
+     * Closing it finishes the encoding, closes out and returns the deflater to the pool
+     */
+    public OutputStream wrap(OutputStream out, String encoding) throws IOException {
+        boolean gzip = "gzip".equals(encoding);
+        BlockingQueue<Deflater> pool = gzip ? rawDeflaters : zlibDeflaters;
+        Deflater deflater = pool.poll();
+        if (deflater == null) {
+            deflater = new Deflater(level, gzip);
+        }
+        return new CompressingStream(out, deflater, pool, gzip);
+    }
+
+    /**
+     * Whether an Accept-Encoding header allows a coding; a q value of 0 refuses it
+     */
+    public static boolean accepts(String acceptEncoding, String coding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.trim().split(";");
+            String name = parts[0].trim();
+            if (!name.equalsIgnoreCase(coding) && !name.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static final class CompressingStream extends DeflaterOutputStream {
+        private final BlockingQueue<Deflater> pool;
+        private final CRC32 crc;
+        private boolean closed;
+
+        CompressingStream(OutputStream out, Deflater deflater, BlockingQueue<Deflater> pool,
+                          boolean gzip) throws IOException {
+            super(out, deflater, 8192);
+            this.pool = pool;
+            this.crc = gzip ? new CRC32() : null;
+            if (gzip) {
+                out.write(GZIP_HEADER);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            super.write(b, off, len);
+            if (crc != null) {
+                crc.update(b, off, len);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                finish();
+                if (crc != null) {
+                    writeIntLE((int) crc.getValue());
+                    writeIntLE((int) def.getBytesRead());
+                }
+                out.close();
+            } finally {
+                def.reset();
+                if (!pool.offer(def)) {
+                    def.end();
+                }
+            }
+        }
+
+        private void writeIntLE(int value) throws IOException {
+            out.write(value & 0xff);
+            out.write((value >> 8) & 0xff);
+            out.write((value >> 16) & 0xff);
+            out.write((value >> 24) & 0xff);
+        }
+    }
+}
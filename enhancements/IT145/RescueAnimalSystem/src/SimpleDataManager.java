@@ -1,102 +1,649 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntSupplier;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 public class SimpleDataManager {
     private static final String DATA_DIR = "data";
     private static final String USERS_FILE = DATA_DIR + "/users.txt";
     private static final String ANIMALS_FILE = DATA_DIR + "/animals.txt";
+    private static final String ANIMALS_BINARY_FILE = DATA_DIR + "/animals.bin";
     private static final String ACTIVITIES_FILE = DATA_DIR + "/activities.txt";
+    private static final String ACTIVITIES_DIR = DATA_DIR + "/activities";
     private static final String LOCATIONS_FILE = DATA_DIR + "/locations.txt";
+    private static final String WAL_FILE = DATA_DIR + "/wal.log";
+    private static final String SNAPSHOT_HEADER = "#lsn=";
+    private static final long JOURNAL_SYNC_INTERVAL_MS = 1000;
+    private static final long COMMIT_BATCH_WINDOW_MS = 50;
+    private static final long COMPACTION_THRESHOLD_BYTES = 1024 * 1024;
+    private static final long COMPACTION_CHECK_INTERVAL_MS = 60 * 1000;
+    private static final int ACTIVITY_RETENTION_DAYS = 365;
+    private static final ActivitySegments.RetentionAction ACTIVITY_RETENTION_ACTION =
+        ActivitySegments.RetentionAction.ARCHIVE;
+    private static final int CHANGE_LOG_CAPACITY = 1024;
     
     // In-memory data structures
     private Map<String, User> users;
-    private List<RescueAnimal> animals;
-    private List<Activity> activities;
+    // Animals keyed by lower-cased name, in insertion order, so by-name lookups are O(1)
+    private Map<String, RescueAnimal> animals;
     private Map<String, String> animalLocations;
     
+    // Activities stay on disk in daily segments; today's is appended to and read back through a mapping
+    private ActivitySegments activitySegments;
+    private final ActivityJournal.DurabilityPolicy journalPolicy;
+    
+    // Coalesces store writes from all request threads into batched flushes
+    private GroupCommitWriter commitWriter;
+    
+    // User, animal and location mutations go to the log; the .txt files are snapshots
+    private WriteAheadLog writeAheadLog;
+    private long usersSnapshotLsn = 0;
+    private long animalsSnapshotLsn = 0;
+    private long locationsSnapshotLsn = 0;
+    private long lastLoadedLsn = 0;
+    private final Object snapshotLock = new Object();
+    private Timer compactionTimer;
+    
+    // Dirty tracking: last log record per store, and entities edited in place but not yet logged
+    private final Map<GroupCommitWriter.Store, Long> lastLoggedLsn = new EnumMap<>(GroupCommitWriter.Store.class);
+    private final Set<String> changedUsers = new LinkedHashSet<>();
+    private final Set<RescueAnimal> changedAnimals = new LinkedHashSet<>();
+    
+    // Bumped on every animal, location or reservation change so readers can cache what they derive
+    private final AtomicLong dataVersion = new AtomicLong();
+    private final AtomicLong usersVersion = new AtomicLong();
+    
+    // Recent changes for clients that sync incrementally; older ones are dropped and those clients resync in full
+    private final ArrayDeque<AnimalChange> animalChanges = new ArrayDeque<>();
+    private long animalChangesStart = 0;
+    private final ArrayDeque<Activity> recentActivities = new ArrayDeque<>();
+    private long activitySequence = 0;
+    
+    // Told about changes as they happen, with the lock held, so they must not block
+    private final List<LongConsumer> animalChangeListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<Activity>> activityListeners = new CopyOnWriteArrayList<>();
+    
+    // Parses large snapshot files in parallel during startup only
+    private ForkJoinPool loadPool;
+    
     public SimpleDataManager() {
+        this(ActivityJournal.DurabilityPolicy.PERIODIC);
+    }
+    
+    public SimpleDataManager(ActivityJournal.DurabilityPolicy journalPolicy) {
+        this.journalPolicy = journalPolicy;
         initializeDataStructures();
         loadAllData();
+        openWriteAheadLog();
+        startCommitWriter();
+        startCompactionTask();
+    }
+    
+    private void startCommitWriter() {
+        Map<GroupCommitWriter.Store, GroupCommitWriter.StoreFlusher> flushers =
+            new EnumMap<>(GroupCommitWriter.Store.class);
+        // Mutations are already in the log, so a commit only has to log pending
+        // in-place edits and force it
+        GroupCommitWriter.StoreFlusher syncLog = () -> {
+            logChangedEntities();
+            if (writeAheadLog != null) {
+                writeAheadLog.sync();
+            }
+        };
+        flushers.put(GroupCommitWriter.Store.USERS, syncLog);
+        flushers.put(GroupCommitWriter.Store.ANIMALS, syncLog);
+        flushers.put(GroupCommitWriter.Store.LOCATIONS, syncLog);
+        flushers.put(GroupCommitWriter.Store.ACTIVITIES, () -> {
+            if (activitySegments != null) {
+                activitySegments.sync();
+            }
+        });
+        commitWriter = new GroupCommitWriter(flushers, COMMIT_BATCH_WINDOW_MS);
+    }
+    
+    private void openWriteAheadLog() {
+        try {
+            writeAheadLog = new WriteAheadLog(Paths.get(WAL_FILE), lastLoadedLsn);
+        } catch (IOException e) {
+            System.err.println("Error opening write-ahead log: " + e.getMessage());
+        }
+    }
+    
+    private void startCompactionTask() {
+        compactionTimer = new Timer("snapshot-compactor", true); // Daemon thread
+        compactionTimer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    if (writeAheadLog != null && writeAheadLog.size() > COMPACTION_THRESHOLD_BYTES) {
+                        compact();
+                    }
+                } catch (IOException e) {
+                    System.err.println("Error checking write-ahead log: " + e.getMessage());
+                }
+            }
+        }, COMPACTION_CHECK_INTERVAL_MS, COMPACTION_CHECK_INTERVAL_MS);
+    }
+    
+    /**
+     * Append a mutation to the write-ahead log and queue it for the next group commit
+     * Without a log (it failed to open) the affected store is saved as a snapshot instead
+     */
+    private CompletableFuture<Void> logMutation(WriteAheadLog.Operation operation, String payload,
+                                                GroupCommitWriter.Store store) {
+        try {
+            appendToLog(operation, payload, store);
+        } catch (IOException e) {
+            System.err.println("Error writing to write-ahead log: " + e.getMessage());
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        return scheduleSave(store);
+    }
+    
+    private synchronized void appendToLog(WriteAheadLog.Operation operation, String payload,
+                                          GroupCommitWriter.Store store) throws IOException {
+        if (writeAheadLog != null) {
+            lastLoggedLsn.put(store, writeAheadLog.append(operation, payload));
+        }
+    }
+    
+    /**
+     * Write consolidated snapshots of the stores that have log records newer than
+     * their last snapshot, then drop the log records they cover. The log is rolled
+     * over while the snapshot state is captured, so mutations that arrive during the
+     * write land in the new log. Clean stores have nothing in the rolled log to lose.
+     */
+    public void compact() {
+        synchronized (snapshotLock) {
+            byte[] usersSnapshot = null;
+            byte[] animalsSnapshot = null;
+            byte[] locationsSnapshot = null;
+            long snapshotLsn;
+            synchronized (this) {
+                if (isStoreDirty(GroupCommitWriter.Store.USERS, usersSnapshotLsn)) {
+                    usersSnapshot = renderUsers();
+                }
+                if (isStoreDirty(GroupCommitWriter.Store.ANIMALS, animalsSnapshotLsn)) {
+                    animalsSnapshot = renderAnimals();
+                }
+                if (isStoreDirty(GroupCommitWriter.Store.LOCATIONS, locationsSnapshotLsn)) {
+                    locationsSnapshot = renderLocations();
+                }
+                if (usersSnapshot == null && animalsSnapshot == null && locationsSnapshot == null) {
+                    return;
+                }
+                snapshotLsn = currentLsn();
+                try {
+                    // If an earlier compaction failed, its rolled log is still there and this
+                    // one keeps the live log whole; the snapshots cover both either way
+                    if (writeAheadLog != null && !writeAheadLog.rollover()) {
+                        System.err.println("Write-ahead log not rolled over: previous compaction incomplete");
+                    }
+                } catch (IOException e) {
+                    System.err.println("Error rolling over write-ahead log: " + e.getMessage());
+                    return;
+                }
+            }
+            
+            try {
+                if (usersSnapshot != null) {
+                    writeFile(USERS_FILE, usersSnapshot);
+                }
+                if (animalsSnapshot != null) {
+                    writeFile(ANIMALS_BINARY_FILE, animalsSnapshot);
+                }
+                if (locationsSnapshot != null) {
+                    writeFile(LOCATIONS_FILE, locationsSnapshot);
+                }
+                if (writeAheadLog != null) {
+                    writeAheadLog.discardRolled();
+                }
+            } catch (IOException e) {
+                // The rolled log is kept, so the next startup can still replay it
+                System.err.println("Error writing snapshots: " + e.getMessage());
+                return;
+            }
+            
+            synchronized (this) {
+                if (usersSnapshot != null) usersSnapshotLsn = snapshotLsn;
+                if (animalsSnapshot != null) animalsSnapshotLsn = snapshotLsn;
+                if (locationsSnapshot != null) locationsSnapshotLsn = snapshotLsn;
+            }
+        }
+    }
+    
+    private boolean isStoreDirty(GroupCommitWriter.Store store, long snapshotLsn) {
+        return lastLoggedLsn.getOrDefault(store, 0L) > snapshotLsn;
+    }
+    
+    /**
+     * Record an in-place edit to a user (e.g. after setFullName)
+     * The user is logged once at the next commit, however often it was marked
+     */
+    public synchronized void markUserChanged(String username) {
+        if (users.containsKey(username)) {
+            usersVersion.incrementAndGet();
+            changedUsers.add(username);
+            scheduleSave(GroupCommitWriter.Store.USERS);
+        }
+    }
+    
+    /**
+     * Record an in-place edit to an animal (e.g. a reservation or training status change)
+     */
+    public synchronized void markAnimalChanged(RescueAnimal animal) {
+        if (animals.get(nameKey(animal.getName())) == animal) {
+            recordAnimalChange(animal.getName());
+            changedAnimals.add(animal);
+            scheduleSave(GroupCommitWriter.Store.ANIMALS);
+        }
+    }
+    
+    /**
+     * Edit an animal in place and optionally rename it, as one step under this manager's lock
+     * Returns the edited animal, or null if there is no animal by that name or the new name belongs to another.
+     * A rename is logged immediately because the old name has to be removed together with the new one
+     */
+    public synchronized RescueAnimal updateAnimal(String name, String newName, Consumer<RescueAnimal> edit) {
+        RescueAnimal animal = findAnimalByName(name);
+        if (animal == null) {
+            return null;
+        }
+        RescueAnimal existing = findAnimalByName(newName);
+        if (existing != null && existing != animal) {
+            return null;
+        }
+        
+        String oldName = animal.getName();
+        edit.accept(animal);
+        animal.setName(newName);
+        if (oldName.equals(newName)) {
+            markAnimalChanged(animal);
+            return animal;
+        }
+        
+        animals.remove(nameKey(oldName));
+        animals.put(nameKey(newName), animal);
+        recordAnimalChange(oldName);
+        recordAnimalChange(newName);
+        changedAnimals.remove(animal);
+        logMutation(WriteAheadLog.Operation.ANIMAL_DELETE, oldName, GroupCommitWriter.Store.ANIMALS);
+        logMutation(WriteAheadLog.Operation.ANIMAL_PUT, AnimalCodec.toLine(animal), GroupCommitWriter.Store.ANIMALS);
+        return animal;
+    }
+    
+    // Log the current state of every entity edited in place; returns false if there were none
+    private synchronized boolean logChangedEntities() throws IOException {
+        if (changedUsers.isEmpty() && changedAnimals.isEmpty()) {
+            return false;
+        }
+        for (String username : changedUsers) {
+            User user = users.get(username);
+            if (user != null) {
+                appendToLog(WriteAheadLog.Operation.USER_PUT, userToLine(user), GroupCommitWriter.Store.USERS);
+            }
+        }
+        for (RescueAnimal animal : changedAnimals) {
+            appendToLog(WriteAheadLog.Operation.ANIMAL_PUT, AnimalCodec.toLine(animal), GroupCommitWriter.Store.ANIMALS);
+        }
+        changedUsers.clear();
+        changedAnimals.clear();
+        return true;
+    }
+    
+    /**
+     * Queue a store for the next group commit
+     * Before the writer is running (during startup) the store is saved directly
+     */
+    private CompletableFuture<Void> scheduleSave(GroupCommitWriter.Store store) {
+        if (commitWriter != null) {
+            return commitWriter.submit(store);
+        }
+        switch (store) {
+            case USERS: saveUsers(); break;
+            case ANIMALS: saveAnimals(); break;
+            case ACTIVITIES: saveActivities(); break;
+            case LOCATIONS: saveLocations(); break;
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+    
+    /**
+     * Future that completes once every mutation made so far is on disk
+     */
+    public CompletableFuture<Void> whenDurable() {
+        if (commitWriter == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return commitWriter.whenFlushed();
+    }
+    
+    /**
+     * Replace a file without ever exposing a partly written version
+     * The content goes to a temp file that is forced to the device and then
+     * renamed over the target, so a crash leaves either the old or the new file
+     */
+    private void writeFile(String fileName, byte[] content) throws IOException {
+        Path target = Paths.get(fileName);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE,
+                                                    StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(target.toAbsolutePath().getParent());
+    }
+    
+    // Make the rename itself durable; not every platform can open a directory, so failures are ignored
+    private void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Best effort
+        }
+    }
+    
+    /**
+     * Wrap a line parser so checksummed records are verified first
+     * Records that fail the check are quarantined and skipped
+     */
+    private <T> Function<String, T> verified(Path file, Function<String, T> parser) {
+        return line -> {
+            String record = RecordChecksum.unseal(line);
+            if (record == null) {
+                RecordChecksum.quarantine(file, line);
+                return null;
+            }
+            return parser.apply(record);
+        };
     }
     
     private void initializeDataStructures() {
         users = new HashMap<>();
-        animals = new ArrayList<>();
-        activities = new ArrayList<>();
+        animals = new LinkedHashMap<>();
         animalLocations = new HashMap<>();
         
         // Create data directory
         new File(DATA_DIR).mkdirs();
     }
     
+    /**
+     * Load the four stores concurrently, then replay the write-ahead log over them
+     * Each loader fills only its own store, so they share nothing until joined
+     */
     public void loadAllData() {
-        loadUsers();
-        loadAnimals();
-        loadActivities();
-        loadLocations();
+        long start = System.nanoTime();
+        loadPool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        List<CompletableFuture<String>> loads = new ArrayList<>();
+        try {
+            loads.add(loadStore("Users", this::loadUsers, () -> users.size()));
+            loads.add(loadStore("Animals", this::loadAnimals, () -> animals.size()));
+            loads.add(loadStore("Activities", this::loadActivities,
+                                () -> activitySegments != null ? activitySegments.size() : 0));
+            loads.add(loadStore("Locations", this::loadLocations, () -> animalLocations.size()));
+            CompletableFuture.allOf(loads.toArray(CompletableFuture<?>[]::new)).join();
+        } finally {
+            loadPool.shutdown();
+            loadPool = null;
+        }
+        
+        // Replay only once every snapshot is in place
+        lastLoadedLsn = Math.max(usersSnapshotLsn, Math.max(animalsSnapshotLsn, locationsSnapshotLsn));
+        replayWriteAheadLog();
         
-        System.out.println("Database loaded successfully");
-        System.out.println("Users: " + users.size());
-        System.out.println("Animals: " + animals.size());
-        System.out.println("Activities: " + activities.size());
-        System.out.println("Locations: " + animalLocations.size());
+        if (users.isEmpty()) {
+            createDefaultAdmin();
+        }
+        
+        System.out.println(String.format("Database loaded successfully in %d ms",
+                          (System.nanoTime() - start) / 1_000_000));
+        for (CompletableFuture<String> load : loads) {
+            System.out.println(load.join());
+        }
+    }
+    
+    // Run one store's loader on the load pool and describe how long it took
+    private CompletableFuture<String> loadStore(String name, Runnable loader, IntSupplier count) {
+        return CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                loader.run();
+            } catch (RuntimeException e) {
+                System.err.println("Error loading " + name.toLowerCase() + ": " + e.getMessage());
+            }
+            return String.format("%s: %d (%d ms)", name, count.getAsInt(),
+                                 (System.nanoTime() - start) / 1_000_000);
+        }, loadPool);
     }
     
+    /**
+     * Make every change durable
+     * Only entities marked as changed are written, and nothing is written
+     * at all when there are no pending changes
+     */
     public void saveAll() {
-        saveUsers();
-        saveAnimals();
-        saveActivities();
-        saveLocations();
-        System.out.println("All data saved to database");
+        boolean changed;
+        try {
+            changed = logChangedEntities();
+            if (writeAheadLog != null && writeAheadLog.sync()) {
+                changed = true;
+            }
+            if (activitySegments != null && activitySegments.sync()) {
+                changed = true;
+            }
+        } catch (IOException e) {
+            System.err.println("Error saving data: " + e.getMessage());
+            return;
+        }
+        
+        if (changed) {
+            System.out.println("All data saved to database");
+        } else {
+            System.out.println("No changes to save");
+        }
     }
     
-    // USER MANAGEMENT
-    private void loadUsers() {
+    /**
+     * Flush pending group commits and release the log files
+     * Every mutation is already in the log, so shutdown only has to force it
+     */
+    public void close() {
+        if (compactionTimer != null) {
+            compactionTimer.cancel();
+        }
+        if (commitWriter != null) {
+            commitWriter.close();
+            System.out.println(String.format("Group commit: %d writes coalesced into %d batches",
+                              commitWriter.getRequestCount(), commitWriter.getBatchCount()));
+        }
         try {
-            if (Files.exists(Paths.get(USERS_FILE))) {
-                List<String> lines = Files.readAllLines(Paths.get(USERS_FILE));
-                for (String line : lines) {
-                    String[] parts = line.split("\\|");
-                    if (parts.length >= 5) {
-                        User user = new User(parts[0], parts[1], parts[2], UserRole.valueOf(parts[3]));
-                        user.setActive(Boolean.parseBoolean(parts[4]));
-                        users.put(user.getUsername(), user);
-                    } else if (parts.length >= 4) {
-                        // Legacy format without active status
-                        User user = new User(parts[0], parts[1], parts[2], UserRole.valueOf(parts[3]));
+            if (writeAheadLog != null) {
+                writeAheadLog.close();
+            }
+            if (activitySegments != null) {
+                activitySegments.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing data files: " + e.getMessage());
+        }
+    }
+    
+    private void replayWriteAheadLog() {
+        try {
+            long highest = WriteAheadLog.replay(Paths.get(WAL_FILE), this::applyLogRecord);
+            lastLoadedLsn = Math.max(lastLoadedLsn, highest);
+        } catch (IOException e) {
+            System.err.println("Error replaying write-ahead log: " + e.getMessage());
+        }
+    }
+    
+    // Apply a replayed record unless the store's snapshot already includes it
+    private void applyLogRecord(WriteAheadLog.Record record) {
+        String payload = record.getPayload();
+        GroupCommitWriter.Store store = storeOf(record.getOperation());
+        lastLoggedLsn.merge(store, record.getSequence(), Math::max);
+        switch (record.getOperation()) {
+            case USER_PUT:
+                if (record.getSequence() > usersSnapshotLsn) {
+                    User user = parseUserFromLine(payload);
+                    if (user != null) {
                         users.put(user.getUsername(), user);
                     }
                 }
+                break;
+            case USER_DELETE:
+                if (record.getSequence() > usersSnapshotLsn) {
+                    users.remove(payload);
+                }
+                break;
+            case ANIMAL_PUT:
+                if (record.getSequence() > animalsSnapshotLsn) {
+                    RescueAnimal animal = AnimalCodec.fromLine(payload);
+                    if (animal != null) {
+                        animals.put(nameKey(animal.getName()), animal);
+                    }
+                }
+                break;
+            case ANIMAL_DELETE:
+                if (record.getSequence() > animalsSnapshotLsn) {
+                    animals.remove(nameKey(payload));
+                }
+                break;
+            case LOCATION_PUT:
+                if (record.getSequence() > locationsSnapshotLsn) {
+                    int separator = payload.indexOf('|');
+                    if (separator > 0) {
+                        animalLocations.put(payload.substring(0, separator), payload.substring(separator + 1));
+                    }
+                }
+                break;
+            case LOCATION_DELETE:
+                if (record.getSequence() > locationsSnapshotLsn) {
+                    animalLocations.remove(payload);
+                }
+                break;
+        }
+    }
+    
+    private GroupCommitWriter.Store storeOf(WriteAheadLog.Operation operation) {
+        switch (operation) {
+            case USER_PUT:
+            case USER_DELETE:
+                return GroupCommitWriter.Store.USERS;
+            case ANIMAL_PUT:
+            case ANIMAL_DELETE:
+                return GroupCommitWriter.Store.ANIMALS;
+            default:
+                return GroupCommitWriter.Store.LOCATIONS;
+        }
+    }
+    
+    // Snapshot files start with the log sequence number they cover
+    // Sequence number from a text snapshot's header line, or 0 if it has none
+    private long readSnapshotLsn(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String first = reader.readLine();
+            if (first != null && first.startsWith(SNAPSHOT_HEADER)) {
+                try {
+                    return Long.parseLong(first.substring(SNAPSHOT_HEADER.length()).trim());
+                } catch (NumberFormatException e) {
+                    System.err.println("Invalid snapshot header: " + first);
+                }
             }
-            
-            if (users.isEmpty()) {
-                createDefaultAdmin();
+        }
+        return 0;
+    }
+    
+    // Caller must hold the lock so the header matches the rendered state
+    private long currentLsn() {
+        return writeAheadLog != null ? writeAheadLog.getLastSequence() : lastLoadedLsn;
+    }
+    
+    // USER MANAGEMENT
+    private void loadUsers() {
+        try {
+            if (Files.exists(Paths.get(USERS_FILE))) {
+                usersSnapshotLsn = readSnapshotLsn(Paths.get(USERS_FILE));
+                Path file = Paths.get(USERS_FILE);
+                for (User user : ChunkedLineReader.parse(file, verified(file, this::parseUserFromLine), loadPool)) {
+                    users.put(user.getUsername(), user);
+                }
             }
         } catch (IOException e) {
             System.err.println("Error loading users: " + e.getMessage());
-            createDefaultAdmin();
         }
     }
     
+    private User parseUserFromLine(String line) {
+        if (line.startsWith("#")) {
+            return null;
+        }
+        String[] parts = line.split("\\|");
+        if (parts.length >= 5) {
+            User user = new User(parts[0], parts[1], parts[2], UserRole.valueOf(parts[3]));
+            user.setActive(Boolean.parseBoolean(parts[4]));
+            return user;
+        } else if (parts.length >= 4) {
+            // Legacy format without active status
+            return new User(parts[0], parts[1], parts[2], UserRole.valueOf(parts[3]));
+        }
+        return null;
+    }
+    
+    private String userToLine(User user) {
+        return user.getUsername() + "|" +
+               user.getPassword() + "|" +
+               user.getFullName() + "|" +
+               user.getRole().name() + "|" +
+               user.isActive();
+    }
+    
+    /**
+     * Write a snapshot of the users store
+     */
     public void saveUsers() {
-        try {
-            StringBuilder sb = new StringBuilder();
-            for (User user : users.values()) {
-                sb.append(user.getUsername()).append("|")
-                  .append(user.getPassword()).append("|")
-                  .append(user.getFullName()).append("|")
-                  .append(user.getRole().name()).append("|")
-                  .append(user.isActive()).append("\n");
+        synchronized (snapshotLock) {
+            try {
+                writeFile(USERS_FILE, renderUsers());
+            } catch (IOException e) {
+                System.err.println("Error saving users: " + e.getMessage());
             }
-            Files.write(Paths.get(USERS_FILE), sb.toString().getBytes());
-        } catch (IOException e) {
-            System.err.println("Error saving users: " + e.getMessage());
         }
     }
     
+    private synchronized byte[] renderUsers() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(SNAPSHOT_HEADER).append(currentLsn()).append("\n");
+        for (User user : users.values()) {
+            sb.append(RecordChecksum.seal(userToLine(user))).append("\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
     private void createDefaultAdmin() {
         String encryptedPassword = PasswordUtil.encrypt("admin123");
         User admin = new User("admin", encryptedPassword, "System Administrator", UserRole.ADMIN);
@@ -105,250 +652,406 @@ public class SimpleDataManager {
         System.out.println("Default admin user created (username: admin, password: admin123)");
     }
     
-    public User getUser(String username) {
+    public synchronized User getUser(String username) {
         return users.get(username);
     }
     
-    public Map<String, User> getUsers() {
+    public synchronized Map<String, User> getUsers() {
         return new HashMap<>(users);
     }
     
-    public boolean addUser(User user) {
+    public synchronized boolean addUser(User user) {
         if (users.containsKey(user.getUsername())) {
             return false;
         }
         users.put(user.getUsername(), user);
-        saveUsers();
+        usersVersion.incrementAndGet();
+        logMutation(WriteAheadLog.Operation.USER_PUT, userToLine(user), GroupCommitWriter.Store.USERS);
         return true;
     }
     
-    public boolean removeUser(String username) {
+    public synchronized boolean removeUser(String username) {
         if (users.containsKey(username)) {
             users.remove(username);
-            saveUsers();
+            usersVersion.incrementAndGet();
+            changedUsers.remove(username);
+            logMutation(WriteAheadLog.Operation.USER_DELETE, username, GroupCommitWriter.Store.USERS);
             return true;
         }
         return false;
     }
     
-    public boolean updateUser(User user) {
+    public synchronized boolean updateUser(User user) {
         if (users.containsKey(user.getUsername())) {
             users.put(user.getUsername(), user);
-            saveUsers();
+            usersVersion.incrementAndGet();
+            logMutation(WriteAheadLog.Operation.USER_PUT, userToLine(user), GroupCommitWriter.Store.USERS);
             return true;
         }
         return false;
     }
     
     // ANIMAL MANAGEMENT
+    /**
+     * Load the newer of the binary and text snapshots
+     * Snapshots are written in binary; animals.txt is read when it is the only
+     * snapshot or was converted from a newer binary one
+     */
     private void loadAnimals() {
+        Path binaryFile = Paths.get(ANIMALS_BINARY_FILE);
+        Path textFile = Paths.get(ANIMALS_FILE);
         try {
-            if (Files.exists(Paths.get(ANIMALS_FILE))) {
-                List<String> lines = Files.readAllLines(Paths.get(ANIMALS_FILE));
-                for (String line : lines) {
-                    RescueAnimal animal = parseAnimalFromLine(line);
-                    if (animal != null) {
-                        animals.add(animal);
-                    }
-                }
+            long binaryLsn = Files.exists(binaryFile) ? AnimalCodec.readLsn(binaryFile) : -1;
+            long textLsn = Files.exists(textFile) ? AnimalCodec.readTextLsn(textFile) : -1;
+            if (binaryLsn >= 0 && binaryLsn >= textLsn) {
+                AnimalCodec.Snapshot snapshot = AnimalCodec.read(binaryFile);
+                indexAnimals(snapshot.getAnimals());
+                animalsSnapshotLsn = snapshot.getLsn();
+                return;
             }
         } catch (IOException e) {
-            System.err.println("Error loading animals: " + e.getMessage());
+            System.err.println("Error loading binary animal snapshot: " + e.getMessage());
+            animals.clear();
         }
-    }
-    
-    private void saveAnimals() {
+        
         try {
-            StringBuilder sb = new StringBuilder();
-            for (RescueAnimal animal : animals) {
-                sb.append(animalToLine(animal)).append("\n");
+            if (Files.exists(textFile)) {
+                animalsSnapshotLsn = readSnapshotLsn(textFile);
+                indexAnimals(ChunkedLineReader.parse(textFile, verified(textFile, AnimalCodec::fromLine), loadPool));
             }
-            Files.write(Paths.get(ANIMALS_FILE), sb.toString().getBytes());
         } catch (IOException e) {
-            System.err.println("Error saving animals: " + e.getMessage());
+            System.err.println("Error loading animals: " + e.getMessage());
         }
     }
     
-    private RescueAnimal parseAnimalFromLine(String line) {
-        String[] parts = line.split("\\|");
-        if (parts.length < 10) return null;
-        
-        String type = parts[1];
-        switch (type.toLowerCase()) {
-            case "dog":
-                if (parts.length >= 11) {
-                    return new Dog(parts[0], parts[10], parts[2], parts[3], parts[4],
-                                  parts[5], parts[6], parts[7], Boolean.parseBoolean(parts[8]), parts[9]);
-                }
-                break;
-            case "monkey":
-                if (parts.length >= 14) {
-                    return new Monkey(parts[0], parts[2], parts[3], parts[4], parts[10],
-                                     parts[11], parts[12], parts[13], parts[5], parts[6],
-                                     parts[7], Boolean.parseBoolean(parts[8]), parts[9]);
-                }
-                break;
-            case "cat":
-                if (parts.length >= 13) {
-                    return new Cat(parts[0], parts[10], parts[11], Boolean.parseBoolean(parts[12]),
-                                  parts[2], parts[3], parts[4], parts[5], parts[6],
-                                  parts[7], Boolean.parseBoolean(parts[8]), parts[9]);
-                }
-                break;
-            case "bird":
-                if (parts.length >= 14) {
-                    return new Bird(parts[0], parts[10], parts[11], Boolean.parseBoolean(parts[12]),
-                                   parts[13], parts[2], parts[3], parts[4], parts[5], parts[6],
-                                   parts[7], Boolean.parseBoolean(parts[8]), parts[9]);
-                }
-                break;
-            case "rabbit":
-                if (parts.length >= 14) {
-                    return new Rabbit(parts[0], parts[10], parts[11], parts[12],
-                                     Boolean.parseBoolean(parts[13]), parts[2], parts[3], parts[4],
-                                     parts[5], parts[6], parts[7], Boolean.parseBoolean(parts[8]), parts[9]);
-                }
-                break;
+    // A later record with the same name replaces the earlier one, as replay does
+    private void indexAnimals(List<RescueAnimal> loaded) {
+        for (RescueAnimal animal : loaded) {
+            animals.put(nameKey(animal.getName()), animal);
         }
-        return null;
     }
     
-    private String animalToLine(RescueAnimal animal) {
-        StringBuilder sb = new StringBuilder();
-        sb.append(animal.getName()).append("|")
-          .append(animal.getAnimalType()).append("|")
-          .append(animal.getGender()).append("|")
-          .append(animal.getAge()).append("|")
-          .append(animal.getWeight()).append("|")
-          .append(animal.getAcquisitionDate()).append("|")
-          .append(animal.getAcquisitionLocation()).append("|")
-          .append(animal.getTrainingStatus()).append("|")
-          .append(animal.getReserved()).append("|")
-          .append(animal.getInServiceLocation());
-        
-        if (animal instanceof Dog) {
-            Dog dog = (Dog) animal;
-            sb.append("|").append(dog.getBreed());
-        } else if (animal instanceof Monkey) {
-            Monkey monkey = (Monkey) animal;
-            sb.append("|").append(monkey.getSpecies())
-              .append("|").append(monkey.getTailLength())
-              .append("|").append(monkey.getHeight())
-              .append("|").append(monkey.getBodyLength());
-        } else if (animal instanceof Cat) {
-            Cat cat = (Cat) animal;
-            sb.append("|").append(cat.getBreed())
-              .append("|").append(cat.getCoatColor())
-              .append("|").append(cat.isDeclawed());
-        } else if (animal instanceof Bird) {
-            Bird bird = (Bird) animal;
-            sb.append("|").append(bird.getSpecies())
-              .append("|").append(bird.getWingspan())
-              .append("|").append(bird.isCanFly())
-              .append("|").append(bird.getBeakType());
-        } else if (animal instanceof Rabbit) {
-            Rabbit rabbit = (Rabbit) animal;
-            sb.append("|").append(rabbit.getBreed())
-              .append("|").append(rabbit.getFurColor())
-              .append("|").append(rabbit.getEarType())
-              .append("|").append(rabbit.isLitterTrained());
+    // Names are unique regardless of case
+    private static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+    
+    private void saveAnimals() {
+        synchronized (snapshotLock) {
+            try {
+                writeFile(ANIMALS_BINARY_FILE, renderAnimals());
+            } catch (IOException e) {
+                System.err.println("Error saving animals: " + e.getMessage());
+            }
         }
-        
-        return sb.toString();
     }
     
-    public List<RescueAnimal> getAnimals() {
-        return new ArrayList<>(animals);
+    private synchronized byte[] renderAnimals() {
+        return AnimalCodec.encode(animals.values(), currentLsn());
     }
     
-    public boolean addAnimal(RescueAnimal animal) {
-        boolean exists = animals.stream()
-            .anyMatch(a -> a.getName().equalsIgnoreCase(animal.getName()));
-        
-        if (exists) {
+    public synchronized List<RescueAnimal> getAnimals() {
+        return new ArrayList<>(animals.values());
+    }
+    
+    public synchronized boolean addAnimal(RescueAnimal animal) {
+        if (animals.putIfAbsent(nameKey(animal.getName()), animal) != null) {
             return false;
         }
+        recordAnimalChange(animal.getName());
         
-        animals.add(animal);
-        saveAnimals();
+        logMutation(WriteAheadLog.Operation.ANIMAL_PUT, AnimalCodec.toLine(animal), GroupCommitWriter.Store.ANIMALS);
         return true;
     }
     
-    public RescueAnimal findAnimalByName(String name) {
-        return animals.stream()
-            .filter(animal -> animal.getName().equalsIgnoreCase(name))
-            .findFirst()
-            .orElse(null);
+    public synchronized RescueAnimal findAnimalByName(String name) {
+        return name != null ? animals.get(nameKey(name)) : null;
     }
     
-    public boolean removeAnimal(String name) {
-        boolean removed = animals.removeIf(animal -> 
-            animal.getName().equalsIgnoreCase(name));
+    public synchronized boolean removeAnimal(String name) {
+        RescueAnimal removed = animals.remove(nameKey(name));
         
-        if (removed) {
-            animalLocations.remove(name);
-            saveAnimals();
-            saveLocations();
+        if (removed != null) {
+            // Locations and log records use the name as stored, not as the caller typed it
+            String storedName = removed.getName();
+            recordAnimalChange(storedName);
+            changedAnimals.remove(removed);
+            animalLocations.remove(storedName);
+            logMutation(WriteAheadLog.Operation.ANIMAL_DELETE, storedName, GroupCommitWriter.Store.ANIMALS);
+            logMutation(WriteAheadLog.Operation.LOCATION_DELETE, storedName, GroupCommitWriter.Store.LOCATIONS);
         }
         
-        return removed;
+        return removed != null;
+    }
+    
+    /**
+     * Version of the animal, location and reservation data
+     * Increases on every change, so anything built from the data is current while the version is unchanged.
+     * Read it before reading the data: a change made while building is then seen as a newer version
+     */
+    public long getDataVersion() {
+        return dataVersion.get();
+    }
+    
+    /**
+     * Names of the animals added, changed or deleted since the given data version
+     * Returns null if the version is older than the change log reaches back, or not one this manager issued;
+     * the caller then has to send everything
+     */
+    public synchronized Set<String> getAnimalChangesSince(long version) {
+        if (version < animalChangesStart || version > dataVersion.get()) {
+            return null;
+        }
+        Set<String> names = new LinkedHashSet<>();
+        Iterator<AnimalChange> newestFirst = animalChanges.descendingIterator();
+        while (newestFirst.hasNext()) {
+            AnimalChange change = newestFirst.next();
+            if (change.version <= version) {
+                break;
+            }
+            names.add(change.name);
+        }
+        return names;
+    }
+    
+    /**
+     * Number of activities appended since this manager was started; a cursor for getActivitiesAfter
+     */
+    public synchronized long getActivitySequence() {
+        return activitySequence;
+    }
+    
+    /**
+     * Activities appended after the given sequence number, oldest first
+     * Returns null if some of them have already left the change log
+     */
+    public synchronized List<Activity> getActivitiesAfter(long sequence) {
+        long missed = activitySequence - sequence;
+        if (missed < 0 || missed > recentActivities.size()) {
+            return null;
+        }
+        List<Activity> appended = new ArrayList<>((int) missed);
+        Iterator<Activity> newestFirst = recentActivities.descendingIterator();
+        for (long i = 0; i < missed; i++) {
+            appended.add(newestFirst.next());
+        }
+        Collections.reverse(appended);
+        return appended;
+    }
+    
+    // Bump the data version and remember which animal it was for; caller holds the lock
+    private void recordAnimalChange(String name) {
+        long version = dataVersion.incrementAndGet();
+        animalChanges.addLast(new AnimalChange(version, name));
+        if (animalChanges.size() > CHANGE_LOG_CAPACITY) {
+            animalChangesStart = animalChanges.removeFirst().version;
+        }
+        notifyAnimalChange(version);
+    }
+    
+    private void notifyAnimalChange(long version) {
+        for (LongConsumer listener : animalChangeListeners) {
+            listener.accept(version);
+        }
+    }
+    
+    /**
+     * Be told the new data version after every animal change
+     * Called with the manager's lock held, so the listener must hand work off rather than block
+     */
+    public void addAnimalChangeListener(LongConsumer listener) {
+        animalChangeListeners.add(listener);
+    }
+    
+    /**
+     * Be told about every activity as it is appended
+     * Called with the manager's lock held, so the listener must hand work off rather than block
+     */
+    public void addActivityListener(Consumer<Activity> listener) {
+        activityListeners.add(listener);
+    }
+    
+    private static class AnimalChange {
+        final long version;
+        final String name;
+        
+        AnimalChange(long version, String name) {
+            this.version = version;
+            this.name = name;
+        }
+    }
+    
+    /**
+     * Version of the users store; increases on every user change
+     */
+    public long getUsersVersion() {
+        return usersVersion.get();
+    }
+    
+    /**
+     * Version of the activity history; increases on every append and retention pass that removes history
+     */
+    public long getActivitiesVersion() {
+        return activitySegments != null ? activitySegments.getVersion() : 0;
     }
     
     // ACTIVITY MANAGEMENT
     private void loadActivities() {
         try {
-            if (Files.exists(Paths.get(ACTIVITIES_FILE))) {
-                List<String> lines = Files.readAllLines(Paths.get(ACTIVITIES_FILE));
-                for (String line : lines) {
-                    String[] parts = line.split("\\|");
-                    if (parts.length >= 6) {
-                        Activity activity = new Activity(parts[0], parts[1], parts[2], 
-                                                       parts[3], parts[4], parts[5]);
-                        activities.add(activity);
-                    }
-                }
-            }
+            activitySegments = new ActivitySegments(Paths.get(ACTIVITIES_DIR), Paths.get(ACTIVITIES_FILE),
+                                               journalPolicy, JOURNAL_SYNC_INTERVAL_MS,
+                                               ACTIVITY_RETENTION_DAYS, ACTIVITY_RETENTION_ACTION);
         } catch (IOException e) {
             System.err.println("Error loading activities: " + e.getMessage());
         }
     }
     
+    /**
+     * The log already holds every activity, so saving only has to
+     * force appends that the durability policy has not synced yet
+     */
     private void saveActivities() {
+        if (activitySegments == null) {
+            return;
+        }
         try {
-            StringBuilder sb = new StringBuilder();
-            for (Activity activity : activities) {
-                sb.append(activity.getAnimalName()).append("|")
-                  .append(activity.getAnimalType()).append("|")
-                  .append(activity.getActivityType()).append("|")
-                  .append(activity.getDescription()).append("|")
-                  .append(activity.getLocation()).append("|")
-                  .append(activity.getPerformedBy()).append("\n");
-            }
-            Files.write(Paths.get(ACTIVITIES_FILE), sb.toString().getBytes());
+            activitySegments.sync();
         } catch (IOException e) {
             System.err.println("Error saving activities: " + e.getMessage());
         }
     }
     
-    public void addActivity(Activity activity) {
-        activities.add(activity);
-        saveActivities();
+    public synchronized void addActivity(Activity activity) {
+        if (activitySegments == null) {
+            return;
+        }
+        try {
+            activitySegments.append(activity);
+            activitySequence++;
+            recentActivities.addLast(activity);
+            if (recentActivities.size() > CHANGE_LOG_CAPACITY) {
+                recentActivities.removeFirst();
+            }
+            for (Consumer<Activity> listener : activityListeners) {
+                listener.accept(activity);
+            }
+            scheduleSave(GroupCommitWriter.Store.ACTIVITIES);
+        } catch (IOException e) {
+            System.err.println("Error saving activity: " + e.getMessage());
+        }
     }
     
+    /**
+     * Every activity, oldest first
+     * Materializes the whole history; queries should prefer findActivities or forEachActivity
+     */
     public List<Activity> getActivities() {
-        return new ArrayList<>(activities);
+        if (activitySegments == null) {
+            return new ArrayList<>();
+        }
+        try {
+            List<Activity> all = new ArrayList<>();
+            activitySegments.forEach(all::add);
+            return all;
+        } catch (IOException e) {
+            System.err.println("Error reading activities: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * Activities after the given time, newest first
+     * Uses the time index, so the cost depends on the size of the range, not the history
+     */
+    public List<Activity> getActivitiesSince(LocalDateTime since) {
+        if (activitySegments == null) {
+            return new ArrayList<>();
+        }
+        long sinceMillis = since.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        try {
+            return activitySegments.find(sinceMillis, segment -> true, activity -> true);
+        } catch (IOException e) {
+            System.err.println("Error reading activities: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * All activities, newest first, without sorting
+     */
+    public List<Activity> getActivitiesNewestFirst() {
+        return findActivities(activity -> true);
+    }
+    
+    /**
+     * Activities matching the filter, newest first
+     * Records are read from the log one at a time; only matches are kept
+     */
+    public List<Activity> findActivities(Predicate<Activity> filter) {
+        return findActivities(segment -> true, filter);
+    }
+    
+    /**
+     * Activities of the given type, newest first
+     * Segments that never saw the type are skipped unread
+     */
+    public List<Activity> getActivitiesByType(String activityType) {
+        return findActivities(segment -> segment.hasType(activityType),
+                              activity -> activity.getActivityType().equalsIgnoreCase(activityType));
+    }
+    
+    /**
+     * Activities performed by the given user, newest first
+     * Segments the user never appears in are skipped unread
+     */
+    public List<Activity> getActivitiesByPerformer(String performedBy) {
+        return findActivities(segment -> segment.hasPerformer(performedBy),
+                              activity -> activity.getPerformedBy().equalsIgnoreCase(performedBy));
+    }
+    
+    private List<Activity> findActivities(Predicate<ActivitySegments.SegmentInfo> segmentFilter,
+                                          Predicate<Activity> filter) {
+        if (activitySegments == null) {
+            return new ArrayList<>();
+        }
+        try {
+            return activitySegments.find(Long.MIN_VALUE, segmentFilter, filter);
+        } catch (IOException e) {
+            System.err.println("Error reading activities: " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+    
+    /**
+     * Visit every activity, oldest first, without collecting them
+     */
+    public void forEachActivity(Consumer<Activity> action) {
+        if (activitySegments == null) {
+            return;
+        }
+        try {
+            activitySegments.forEach(action);
+        } catch (IOException e) {
+            System.err.println("Error reading activities: " + e.getMessage());
+        }
+    }
+    
+    public int getActivityCount() {
+        return activitySegments != null ? activitySegments.size() : 0;
     }
     
     // LOCATION MANAGEMENT
     private void loadLocations() {
         try {
             if (Files.exists(Paths.get(LOCATIONS_FILE))) {
-                List<String> lines = Files.readAllLines(Paths.get(LOCATIONS_FILE));
-                for (String line : lines) {
+                locationsSnapshotLsn = readSnapshotLsn(Paths.get(LOCATIONS_FILE));
+                Path file = Paths.get(LOCATIONS_FILE);
+                List<String[]> entries = ChunkedLineReader.parse(file, verified(file, line -> {
                     String[] parts = line.split("\\|");
-                    if (parts.length >= 2) {
-                        animalLocations.put(parts[0], parts[1]);
-                    }
+                    return parts.length >= 2 && !line.startsWith("#") ? parts : null;
+                }), loadPool);
+                for (String[] parts : entries) {
+                    animalLocations.put(parts[0], parts[1]);
                 }
             }
         } catch (IOException e) {
@@ -357,27 +1060,36 @@ public class SimpleDataManager {
     }
     
     private void saveLocations() {
-        try {
-            StringBuilder sb = new StringBuilder();
-            for (Map.Entry<String, String> entry : animalLocations.entrySet()) {
-                sb.append(entry.getKey()).append("|").append(entry.getValue()).append("\n");
+        synchronized (snapshotLock) {
+            try {
+                writeFile(LOCATIONS_FILE, renderLocations());
+            } catch (IOException e) {
+                System.err.println("Error saving locations: " + e.getMessage());
             }
-            Files.write(Paths.get(LOCATIONS_FILE), sb.toString().getBytes());
-        } catch (IOException e) {
-            System.err.println("Error saving locations: " + e.getMessage());
         }
     }
     
-    public String getAnimalLocation(String animalName) {
+    private synchronized byte[] renderLocations() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(SNAPSHOT_HEADER).append(currentLsn()).append("\n");
+        for (Map.Entry<String, String> entry : animalLocations.entrySet()) {
+            sb.append(RecordChecksum.seal(entry.getKey() + "|" + entry.getValue())).append("\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+    
+    public synchronized String getAnimalLocation(String animalName) {
         return animalLocations.getOrDefault(animalName, "Location not set");
     }
     
-    public void updateAnimalLocation(String animalName, String location) {
+    public synchronized void updateAnimalLocation(String animalName, String location) {
         animalLocations.put(animalName, location);
-        saveLocations();
+        recordAnimalChange(animalName);
+        logMutation(WriteAheadLog.Operation.LOCATION_PUT, animalName + "|" + location,
+                    GroupCommitWriter.Store.LOCATIONS);
     }
     
-    public Map<String, String> getAllLocations() {
+    public synchronized Map<String, String> getAllLocations() {
         return new HashMap<>(animalLocations);
     }
 }
\ No newline at end of file
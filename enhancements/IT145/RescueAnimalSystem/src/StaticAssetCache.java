@@ -0,0 +1,258 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the files under one directory in memory, with gzip and deflate
+ * variants compressed once when a file is loaded (unless the file is too
+ * small to be worth it). Files are loaded at
+ * startup by preload or on first request. A WatchService drops an entry
+ * as soon as its file changes on disk, so the next request reloads it.
+ * Files too large for the cache are left to the caller to stream from
+ * disk. Nothing is cached if the directory cannot be watched, since
+ * entries could then go stale.
+ */
+public class StaticAssetCache implements Closeable {
+    public static final long DEFAULT_MAX_ENTRY_BYTES = 1024 * 1024;
+    public static final long DEFAULT_MAX_TOTAL_BYTES = 64 * 1024 * 1024;
+
+    // A compressed variant is only kept if it saves at least this fraction of the file
+    private static final double MIN_SAVING = 0.1;
+
+    private final Path root;
+    private final ResponseCompressor compressor;
+    private final long maxEntryBytes;
+    private final long maxTotalBytes;
+    private final Map<Path, Asset> assets = new ConcurrentHashMap<>();
+    private final AtomicLong cachedBytes = new AtomicLong();
+    // Bumped on every change seen on disk, so a load that raced with one is not cached
+    private final AtomicLong invalidations = new AtomicLong();
+    private WatchService watcher;
+
+    public StaticAssetCache(Path root, ResponseCompressor compressor) {
+        this(root, compressor, DEFAULT_MAX_ENTRY_BYTES, DEFAULT_MAX_TOTAL_BYTES);
+    }
+
+    public StaticAssetCache(Path root, ResponseCompressor compressor, long maxEntryBytes, long maxTotalBytes) {
+        this.root = root.toAbsolutePath().normalize();
+        this.compressor = compressor;
+        this.maxEntryBytes = maxEntryBytes;
+        this.maxTotalBytes = maxTotalBytes;
+        startWatching();
+    }
+
+    /**
+     * Load every cacheable file under the directory now rather than on first request
+     */
+    public void preload() {
+        if (watcher == null) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(root)) {
+            files.filter(Files::isRegularFile).forEach(this::get);
+        } catch (IOException e) {
+            System.err.println("Error preloading " + root + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The file for a request path relative to the directory, or null if the path leads outside it
+     */
+    public Path resolve(String relativePath) {
+        Path file = root.resolve(relativePath.replaceFirst("^/+", "")).normalize();
+        return file.startsWith(root) ? file : null;
+    }
+
+    /**
+     * The cached asset for a file, loading it if needed
+     * Returns null if the file does not exist or is not cached (too large, or the cache is full or unwatched)
+     */
+    public Asset get(Path file) {
+        Asset asset = assets.get(file);
+        if (asset != null || watcher == null) {
+            return asset;
+        }
+
+        long seen = invalidations.get();
+        try {
+            if (!Files.isRegularFile(file) || Files.size(file) > maxEntryBytes) {
+                return null;
+            }
+            asset = load(file);
+        } catch (IOException e) {
+            System.err.println("Error loading " + file + ": " + e.getMessage());
+            return null;
+        }
+        if (cachedBytes.get() + asset.size() > maxTotalBytes || invalidations.get() != seen) {
+            return null;
+        }
+        Asset previous = assets.putIfAbsent(file, asset);
+        if (previous != null) {
+            return previous;
+        }
+        cachedBytes.addAndGet(asset.size());
+        return asset;
+    }
+
+    public int getEntryCount() {
+        return assets.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    private Asset load(Path file) throws IOException {
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        byte[] identity = Files.readAllBytes(file);
+        byte[] gzip = null;
+        byte[] deflate = null;
+        if (compressor.worthCompressing(identity.length)) {
+            gzip = worthKeeping(compressor.compress(identity, "gzip"), identity);
+            deflate = worthKeeping(compressor.compress(identity, "deflate"), identity);
+        }
+        return new Asset(tag(lastModified, identity.length), identity, gzip, deflate);
+    }
+
+    /**
+     * Entity tag for a file as stored on disk; the same whether or not the file is cached
+     */
+    public static String etag(Path file) throws IOException {
+        return "\"" + tag(Files.getLastModifiedTime(file).toMillis(), Files.size(file)) + "\"";
+    }
+
+    private static String tag(long lastModified, long length) {
+        return Long.toString(lastModified, 36) + "-" + Long.toString(length, 36);
+    }
+
+    private static byte[] worthKeeping(byte[] compressed, byte[] identity) {
+        return compressed.length <= identity.length * (1 - MIN_SAVING) ? compressed : null;
+    }
+
+    private void startWatching() {
+        try {
+            if (!Files.isDirectory(root)) {
+                System.err.println("Not caching " + root + ": directory not found");
+                return;
+            }
+            watcher = FileSystems.getDefault().newWatchService();
+            try (Stream<Path> directories = Files.walk(root)) {
+                for (Path directory : (Iterable<Path>) directories.filter(Files::isDirectory)::iterator) {
+                    register(directory);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Not caching " + root + ": " + e.getMessage());
+            watcher = null;
+            return;
+        }
+
+        Thread thread = new Thread(this::watch, "asset-watcher-" + root.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void register(Path directory) throws IOException {
+        directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                           StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    invalidations.incrementAndGet();
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        // Changes were lost; forget everything
+                        assets.keySet().forEach(this::invalidate);
+                        continue;
+                    }
+                    Path changed = directory.resolve((Path) event.context());
+                    // The path may be a directory, taking everything under it with it
+                    assets.keySet().stream().filter(file -> file.startsWith(changed)).forEach(this::invalidate);
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changed)) {
+                        register(changed);
+                    }
+                }
+                key.reset();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Cache closed
+        } catch (IOException e) {
+            System.err.println("Error watching " + root + ": " + e.getMessage());
+        }
+    }
+
+    private void invalidate(Path file) {
+        Asset removed = assets.remove(file);
+        if (removed != null) {
+            cachedBytes.addAndGet(-removed.size());
+        }
+    }
+
+    /** A cached file and its compressed variants */
+    public static class Asset {
+        private final String tag;
+        private final byte[] identity;
+        private final byte[] gzip;
+        private final byte[] deflate;
+
+        private Asset(String tag, byte[] identity, byte[] gzip, byte[] deflate) {
+            this.tag = tag;
+            this.identity = identity;
+            this.gzip = gzip;
+            this.deflate = deflate;
+        }
+
+        /**
+         * The variant to send for a request's Accept-Encoding header, preferring gzip
+         */
+        public Variant select(String acceptEncoding) {
+            if (gzip != null && ResponseCompressor.accepts(acceptEncoding, "gzip")) {
+                return new Variant("gzip", gzip, tag);
+            }
+            if (deflate != null && ResponseCompressor.accepts(acceptEncoding, "deflate")) {
+                return new Variant("deflate", deflate, tag);
+            }
+            return new Variant(null, identity, tag);
+        }
+
+        private long size() {
+            return identity.length + (gzip != null ? gzip.length : 0) + (deflate != null ? deflate.length : 0);
+        }
+    }
+
+    /** One encoding of an asset */
+    public static class Variant {
+        private final String encoding;
+        private final byte[] body;
+        private final String etag;
+
+        private Variant(String encoding, byte[] body, String tag) {
+            this.encoding = encoding;
+            this.body = body;
+            this.etag = "\"" + tag + (encoding != null ? "-" + encoding : "") + "\"";
+        }
+
+        /** Content-Encoding to send, or null for the file as it is on disk */
+        public String getEncoding() { return encoding; }
+        public byte[] getBody() { return body; }
+        public String getEtag() { return etag; }
+    }
+}
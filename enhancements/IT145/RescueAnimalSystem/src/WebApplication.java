@@ -39,7 +39,12 @@ public class WebApplication {
         
         int port = 8080;
         webServer = new WebServer(port, authSystem, animalService, 
-                                monitoringSystem, reservationService, dataManager);
+                                monitoringSystem, reservationService, dataManager,
+                                getExecutorMode(),
+                                Integer.getInteger("webserver.threads", WebServer.DEFAULT_POOL_SIZE));
+        webServer.setCompression(getCompressionLevel(),
+                                 Integer.getInteger("webserver.compression.minSize",
+                                                    ResponseCompressor.DEFAULT_MIN_SIZE));
         
         displayStartupInformation(port);
         webServer.start();
@@ -1142,12 +1147,7 @@ public class WebApplication {
             .then(response => response.json())
             .then(data => {
                 allAnimalsData = data;
-                if (data.stats) {
-                    document.getElementById('totalAnimals').textContent = data.stats.total;
-                    document.getElementById('availableAnimals').textContent = data.stats.available;
-                    document.getElementById('reservedAnimals').textContent = data.stats.reserved;
-                    document.getElementById('trainingAnimals').textContent = data.stats.training;
-                }
+                showStats(data.stats);
             })
             .catch(error => {
                 console.error('Failed to load dashboard data:', error);
@@ -1155,6 +1155,91 @@ public class WebApplication {
             });
         }
 
+        /*
+        Function: showStats
+        @params:
+        stats: stats object from /api/animals
+        Description: Updates the dashboard statistic cards
+        */
+        function showStats(stats) {
+            if (stats) {
+                document.getElementById('totalAnimals').textContent = stats.total;
+                document.getElementById('availableAnimals').textContent = stats.available;
+                document.getElementById('reservedAnimals').textContent = stats.reserved;
+                document.getElementById('trainingAnimals').textContent = stats.training;
+            }
+        }
+
+        let animalSyncRunning = false;
+        let animalSyncTarget = null;
+
+        /*
+        Function: syncAnimals
+        @params:
+        version: data version announced by the server
+        Description: Brings allAnimalsData up to the announced version by fetching only
+        the animals changed since the version already held. Falls back to a full reload
+        when the server can no longer supply the changes
+        */
+        function syncAnimals(version) {
+            animalSyncTarget = version;
+            if (animalSyncRunning) {
+                return;
+            }
+            if (!allAnimalsData || !allAnimalsData.version) {
+                loadDashboardData();
+                return;
+            }
+            if (allAnimalsData.version === version) {
+                return;
+            }
+            animalSyncRunning = true;
+            fetch('/api/animals?since=' + encodeURIComponent(allAnimalsData.version), { credentials: 'include' })
+            .then(response => response.json())
+            .then(data => {
+                if (data.full) {
+                    allAnimalsData = data;
+                } else {
+                    applyAnimalChanges(data);
+                }
+                showStats(allAnimalsData.stats);
+            })
+            .catch(error => console.error('Failed to sync dashboard data:', error))
+            .finally(() => {
+                animalSyncRunning = false;
+                // More changes may have been announced while this sync was running
+                if (animalSyncTarget && allAnimalsData && animalSyncTarget !== allAnimalsData.version) {
+                    syncAnimals(animalSyncTarget);
+                }
+            });
+        }
+
+        /*
+        Function: applyAnimalChanges
+        @params:
+        delta: changed and deleted animals from /api/animals?since=
+        Description: Merges a delta into allAnimalsData, replacing changed animals in
+        place and dropping deleted ones
+        */
+        function applyAnimalChanges(delta) {
+            const types = ['dogs', 'monkeys', 'cats', 'birds', 'rabbits'];
+            const other = name => animal => animal.name.toLowerCase() !== name.toLowerCase();
+            delta.deleted.forEach(name => types.forEach(type => {
+                if (allAnimalsData[type]) allAnimalsData[type] = allAnimalsData[type].filter(other(name));
+            }));
+            delta.changed.forEach(change => {
+                const list = allAnimalsData[change.type] || (allAnimalsData[change.type] = []);
+                const index = list.findIndex(animal => !other(change.animal.name)(animal));
+                if (index >= 0) {
+                    list[index] = change.animal;
+                } else {
+                    list.push(change.animal);
+                }
+            });
+            allAnimalsData.version = delta.version;
+            allAnimalsData.stats = delta.stats;
+        }
+
         /*
         Function: logout
         @params: none
@@ -1469,14 +1554,14 @@ public class WebApplication {
                 const animalDiv = document.createElement('div');
                 animalDiv.className = 'animal-item';
                 
-                const imagePath = `/images/${animal.type.toLowerCase()}s/${animal.name}_${animal.age}.jpg`;
+                const imagePath = `/images/thumb/${animal.type.toLowerCase()}s/${animal.name}_${animal.age}.jpg`;
                 const placeholderClass = `${animal.type.toLowerCase()}-placeholder`;
                 const typeInitial = animal.type.charAt(0).toUpperCase();
                 
                 animalDiv.innerHTML = `
                     <div class="animal-display">
                         <div class="animal-image">
-                            <img src="${imagePath}" alt="${animal.name}" 
+                            <img src="${imagePath}" alt="${animal.name}" loading="lazy" 
                                  onload="this.style.display='block'; this.nextElementSibling.style.display='none';"
                                  onerror="this.style.display='none'; this.nextElementSibling.style.display='flex';"
                                  style="display: none;">
@@ -2174,17 +2259,58 @@ public class WebApplication {
         }
 
         /*
-        Function: setInterval
+        Function: startLiveUpdates
         @params: none
-        Description: Auto-refresh dashboard data every 30 seconds
+        Description: Listens on /api/stream and syncs the dashboard whenever the server
+        announces an animal change. The browser reconnects a dropped stream by itself;
+        without EventSource support the dashboard polls every 30 seconds instead
         */
-        setInterval(loadDashboardData, 30000);
+        function startLiveUpdates() {
+            if (!window.EventSource) {
+                setInterval(loadDashboardData, 30000);
+                return;
+            }
+            const stream = new EventSource('/api/stream');
+            stream.addEventListener('animals', event => syncAnimals(JSON.parse(event.data).version));
+        }
+        startLiveUpdates();
     </script>
 </body>
 </html>
 """;
     }
     
+    /*
+    Function: getExecutorMode
+    @params: none
+    Description: Reads the request executor mode from -Dwebserver.executor=virtual|platform,
+    defaulting to virtual threads
+    */
+    private static WebServer.ExecutorMode getExecutorMode() {
+        String mode = System.getProperty("webserver.executor", "virtual");
+        try {
+            return WebServer.ExecutorMode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown executor mode '" + mode + "', using virtual threads");
+            return WebServer.ExecutorMode.VIRTUAL;
+        }
+    }
+    
+    /*
+    Function: getCompressionLevel
+    @params: none
+    Description: Reads the response compression level from -Dwebserver.compression.level,
+    from 1 (least CPU) to 9 (least bandwidth), or 0 to turn compression off
+    */
+    private static int getCompressionLevel() {
+        int level = Integer.getInteger("webserver.compression.level", ResponseCompressor.DEFAULT_LEVEL);
+        if (level < 0 || level > 9) {
+            System.err.println("Compression level must be 0-9, using " + ResponseCompressor.DEFAULT_LEVEL);
+            return ResponseCompressor.DEFAULT_LEVEL;
+        }
+        return level;
+    }
+    
     /*
     Function: displayStartupInformation
     @params:
@@ -2239,6 +2365,7 @@ public class WebApplication {
         }
         if (dataManager != null) {
             dataManager.saveAll();
+            dataManager.close();
         }
         System.out.println("Application shutdown complete");
     }
@@ -1,13 +1,64 @@
 import java.io.*;
 import java.net.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import com.sun.net.httpserver.*;
 
 public class WebServer {
+    /** How request handlers are run */
+    public enum ExecutorMode {
+        VIRTUAL,    // one virtual thread per request, where the runtime supports them
+        PLATFORM    // a fixed pool of platform threads
+    }
+    
+    public static final int DEFAULT_POOL_SIZE = Math.max(8, Runtime.getRuntime().availableProcessors() * 4);
+    
     private int port;
     private HttpServer server;
-    private boolean running = false;
+    private volatile boolean running = false;
+    private final ExecutorMode executorMode;
+    private final int poolSize;
+    private ExecutorService executor;
+    private final AdmissionController admissionController = new AdmissionController();
+    
+    // Live updates for /api/stream; an idle stream also rechecks its session this often
+    private static final long STREAM_HEARTBEAT_MS = 15000;
+    private final EventBroadcaster eventBroadcaster = new EventBroadcaster(STREAM_HEARTBEAT_MS);
+    
+    // Store versions restart at zero, so ETags and sync tokens also carry when this server started
+    private final String etagEpoch = Long.toString(System.currentTimeMillis(), 36);
+    
+    // Last GET /api/animals body and the data version it was built from
+    private volatile VersionedBody animalsBody;
+    
+    private static final class VersionedBody {
+        final long version;
+        final byte[] body;
+        // Gzip copy made with the body, since nearly every client asks for it; null if too small
+        final byte[] gzipBody;
+        
+        VersionedBody(long version, byte[] body, byte[] gzipBody) {
+            this.version = version;
+            this.body = body;
+            this.gzipBody = gzipBody;
+        }
+    }
+    
+    // Negotiated compression for JSON responses and cached assets
+    private ResponseCompressor compressor = new ResponseCompressor();
     
     private AuthenticationSystem authSystem;
     private AnimalService animalService;
@@ -16,6 +67,19 @@ public class WebServer {
     private SimpleDataManager dataManager;
     private Map<String, String> sessionMap = new ConcurrentHashMap<>();
     
+    // In-memory copies of the dashboard pages and animal photos, created when the server starts
+    private StaticAssetCache webAssets;
+    private StaticAssetCache imageAssets;
+    
+    // Scaled photos for /images/{size}/...; their URLs do not change with the photo, so they revalidate weekly
+    private static final String IMAGE_VARIANT_CACHE_CONTROL = "public, max-age=604800";
+    private ImageVariants imageVariants;
+    private StaticAssetCache variantAssets;
+    
+    // Location is tracked by the monitoring system rather than on the animal
+    private final JsonCodec<RescueAnimal> animalCodec =
+        JsonCodecs.animals(name -> monitoringSystem.getAnimalLocation(name));
+    
     /*
     Function: WebServer constructor
     @params:
@@ -30,12 +94,56 @@ public class WebServer {
     public WebServer(int port, AuthenticationSystem authSystem, AnimalService animalService,
                     MonitoringSystem monitoringSystem, ReservationService reservationService,
                     SimpleDataManager dataManager) {
+        this(port, authSystem, animalService, monitoringSystem, reservationService, dataManager,
+             ExecutorMode.VIRTUAL, DEFAULT_POOL_SIZE);
+    }
+    
+    /*
+    Function: WebServer constructor
+    @params:
+    executorMode: run each request on a virtual thread or on a platform thread pool
+    poolSize: number of platform threads when the pool is used
+    Description: Initializes WebServer with an explicit request executor
+    */
+    public WebServer(int port, AuthenticationSystem authSystem, AnimalService animalService,
+                    MonitoringSystem monitoringSystem, ReservationService reservationService,
+                    SimpleDataManager dataManager, ExecutorMode executorMode, int poolSize) {
+        this.executorMode = executorMode;
+        this.poolSize = poolSize;
         this.port = port;
         this.authSystem = authSystem;
         this.animalService = animalService;
         this.monitoringSystem = monitoringSystem;
         this.reservationService = reservationService;
         this.dataManager = dataManager;
+        
+        dataManager.addAnimalChangeListener(version ->
+            eventBroadcaster.publish("animals", "{\"version\": \"" + syncToken(version) + "\"}"));
+        dataManager.addActivityListener(activity -> {
+            try {
+                byte[] event = JsonWriter.toBytes(json -> {
+                    json.beginObject();
+                    json.name("cursor").value(syncToken(dataManager.getActivitySequence()));
+                    json.name("activity");
+                    JsonCodecs.ACTIVITY.write(json, activity);
+                    json.endObject();
+                });
+                eventBroadcaster.publish("activity", new String(event, StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                System.err.println("Error publishing activity: " + e.getMessage());
+            }
+        });
+    }
+    
+    /*
+    Function: setCompression
+    @params:
+    level: deflate level from 1 (fastest) to 9 (smallest), or 0 to turn compression off
+    minSize: smallest body in bytes worth compressing
+    Description: Configures response compression; call before start
+    */
+    public void setCompression(int level, int minSize) {
+        this.compressor = new ResponseCompressor(level, minSize);
     }
     
     /*
@@ -47,28 +155,45 @@ public class WebServer {
         try {
             server = HttpServer.create(new InetSocketAddress(port), 0);
             
-            server.createContext("/", this::handleStaticFile);
-            server.createContext("/css/", this::handleStaticFile);
-            server.createContext("/js/", this::handleStaticFile);
-            server.createContext("/images/", this::handleImageFile);
-            
-            server.createContext("/api/login", this::handleLogin);
-            server.createContext("/api/logout", this::handleLogout);
-            server.createContext("/api/register", this::handleRegister);
-            server.createContext("/api/user", this::handleUser);
-            
-            server.createContext("/api/animals", this::handleAnimals);
-            server.createContext("/api/activities", this::handleActivities);
-            server.createContext("/api/reserve", this::handleReservation);
-            
-            server.createContext("/api/users", this::handleUsers);
-            server.createContext("/api/users/fullname", this::handleUserFullName);
-            server.createContext("/api/users/role", this::handleUserRole);
-            server.createContext("/api/users/password", this::handleUserPassword);
-            server.createContext("/api/users/status", this::handleUserStatus);
-            server.createContext("/api/sessions", this::handleSessions);
+            server.createContext("/", admit(AdmissionController.EndpointClass.STATIC, this::handleStaticFile));
+            server.createContext("/css/", admit(AdmissionController.EndpointClass.STATIC, this::handleStaticFile));
+            server.createContext("/js/", admit(AdmissionController.EndpointClass.STATIC, this::handleStaticFile));
+            server.createContext("/images/", admit(AdmissionController.EndpointClass.STATIC, this::handleImageFile));
+            
+            server.createContext("/api/login", admit(AdmissionController.EndpointClass.AUTH, this::handleLogin));
+            server.createContext("/api/logout", admit(AdmissionController.EndpointClass.AUTH, this::handleLogout));
+            server.createContext("/api/register", admit(AdmissionController.EndpointClass.AUTH, this::handleRegister));
+            server.createContext("/api/user", admitByMethod(this::handleUser));
+            
+            server.createContext("/api/animals", admitByMethod(this::handleAnimals));
+            server.createContext("/api/activities", admitByMethod(this::handleActivities));
+            server.createContext("/api/reserve", admitByMethod(this::handleReservation));
+            
+            server.createContext("/api/users", admitByMethod(this::handleUsers));
+            server.createContext("/api/users/fullname", admitByMethod(this::handleUserFullName));
+            server.createContext("/api/users/role", admitByMethod(this::handleUserRole));
+            server.createContext("/api/users/password", admitByMethod(this::handleUserPassword));
+            server.createContext("/api/users/status", admitByMethod(this::handleUserStatus));
+            server.createContext("/api/sessions", admitByMethod(this::handleSessions));
+            server.createContext("/api/stream", admit(AdmissionController.EndpointClass.STREAM, this::handleStream));
+            
+            // Not limited, so load can still be observed while requests are being shed
+            server.createContext("/api/metrics", this::handleMetrics);
+            
+            webAssets = new StaticAssetCache(Paths.get("web"), compressor);
+            webAssets.preload();
+            imageAssets = new StaticAssetCache(Paths.get("images"), compressor);
+            try {
+                imageVariants = new ImageVariants(Paths.get("images"), Paths.get("cache", "images"));
+                variantAssets = new StaticAssetCache(imageVariants.getCacheDir(), compressor);
+                imageVariants.prewarmAsync();
+            } catch (IOException e) {
+                System.err.println("Image sizes unavailable, serving full photos: " + e.getMessage());
+                imageVariants = null;
+            }
             
-            server.setExecutor(null);
+            executor = createExecutor();
+            server.setExecutor(executor);
             server.start();
             running = true;
             
@@ -86,43 +211,212 @@ public class WebServer {
     Description: Stops the HTTP server
     */
     public void stop() {
+        eventBroadcaster.close();
+        closeAssetCache(webAssets);
+        closeAssetCache(imageAssets);
+        closeAssetCache(variantAssets);
         if (server != null) {
             server.stop(0);
             running = false;
             System.out.println("Web server stopped");
         }
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                    executor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    /*
+    Function: admit
+    @params:
+    endpointClass: admission class the endpoint belongs to
+    handler: handler to run once the request is admitted
+    Description: Wraps a handler so it only runs while holding one of its class's
+    in-flight slots; requests that cannot get one are answered with 503
+    */
+    private HttpHandler admit(AdmissionController.EndpointClass endpointClass, HttpHandler handler) {
+        return exchange -> handleAdmitted(exchange, endpointClass, handler);
+    }
+    
+    /*
+    Function: admitByMethod
+    @params:
+    handler: handler to run once the request is admitted
+    Description: Like admit, with GET and HEAD requests counted as reads and
+    everything else as writes
+    */
+    private HttpHandler admitByMethod(HttpHandler handler) {
+        return exchange -> {
+            String method = exchange.getRequestMethod();
+            boolean read = "GET".equals(method) || "HEAD".equals(method);
+            handleAdmitted(exchange, read ? AdmissionController.EndpointClass.READ
+                                          : AdmissionController.EndpointClass.WRITE, handler);
+        };
+    }
+    
+    private void handleAdmitted(HttpExchange exchange, AdmissionController.EndpointClass endpointClass,
+                                HttpHandler handler) throws IOException {
+        AdmissionController.Permit permit = admissionController.tryAdmit(endpointClass);
+        if (permit == null) {
+            exchange.getResponseHeaders().set("Retry-After",
+                String.valueOf(admissionController.getRetryAfterSeconds()));
+            sendJsonResponse(exchange, 503, "{\"error\": \"Server busy, please retry shortly\"}");
+            return;
+        }
+        try (permit) {
+            handler.handle(exchange);
+        }
+    }
+    
+    /*
+    Function: handleMetrics
+    @params:
+    exchange: HTTP exchange object
+    Description: Returns admission control metrics (monitor access and above)
+    */
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        SessionData session = authSystem.validateSession(getSessionFromCookie(exchange));
+        if (session == null) {
+            sendJsonResponse(exchange, 401, "{\"error\": \"Not authenticated\"}");
+            return;
+        }
+        
+        if (!authSystem.hasPermission(session.getUser(), UserRole.MONITOR)) {
+            sendJsonResponse(exchange, 403, "{\"error\": \"Monitor access required\"}");
+            return;
+        }
+        
+        sendJsonResponse(exchange, 200, "{\"admission\": " + admissionController.toJson() + ","
+                                      + "\"stream\": " + eventBroadcaster.toJson() + "}");
+    }
+    
+    /*
+    Function: handleStream
+    @params:
+    exchange: HTTP exchange object
+    Description: Holds a server-sent event stream open so the dashboard refreshes on
+    change instead of polling. Sends an "animals" event with the new data version
+    whenever animals change and, to monitors, an "activity" event for each new
+    activity. The stream ends when the client disconnects, falls too far behind,
+    or its session ends
+    */
+    private void handleStream(HttpExchange exchange) throws IOException {
+        String sessionId = getSessionFromCookie(exchange);
+        SessionData session = authSystem.validateSession(sessionId);
+        
+        if (session == null) {
+            sendJsonResponse(exchange, 401, "{\"error\": \"Not authenticated\"}");
+            return;
+        }
+        
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            sendJsonResponse(exchange, 405, "{\"error\": \"Method not allowed\"}");
+            return;
+        }
+        
+        Set<String> events = authSystem.hasPermission(session.getUser(), UserRole.MONITOR)
+            ? Set.of("animals", "activity") : Set.of("animals");
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        
+        EventBroadcaster.Subscriber subscriber = eventBroadcaster.subscribe(sessionId, events);
+        try (OutputStream os = exchange.getResponseBody()) {
+            // Start with the current version so a reconnecting client can catch up on what it missed
+            String hello = "retry: 3000\nevent: animals\ndata: {\"version\": \""
+                         + syncToken(dataManager.getDataVersion()) + "\"}\n\n";
+            os.write(hello.getBytes(StandardCharsets.UTF_8));
+            os.flush();
+            
+            while (running) {
+                String frame = subscriber.next(STREAM_HEARTBEAT_MS);
+                // Checked on every pass, heartbeats included, and without extending the session:
+                // an open stream must not keep an expired or deactivated session receiving events
+                if (subscriber.isClosed() || !authSystem.isSessionValid(sessionId)) {
+                    break;
+                }
+                if (frame != null) {
+                    os.write(frame.getBytes(StandardCharsets.UTF_8));
+                    os.flush();
+                }
+            }
+        } catch (IOException e) {
+            // The client went away; nothing left to send it
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            eventBroadcaster.unsubscribe(subscriber);
+        }
+    }
+    
+    /*
+    Function: createExecutor
+    @params: none
+    Description: Builds the request executor for the configured mode. Virtual threads
+    are looked up reflectively so the server still runs on JDKs without them, in
+    which case it falls back to the platform thread pool
+    */
+    private ExecutorService createExecutor() {
+        if (executorMode == ExecutorMode.VIRTUAL) {
+            try {
+                ExecutorService virtual = (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                System.out.println("Handling requests on virtual threads");
+                return virtual;
+            } catch (ReflectiveOperationException e) {
+                System.out.println("Virtual threads are not available on this JDK; using a thread pool");
+            }
+        }
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "http-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // Admission control decides which requests wait, so the pool must not run out first:
+        // a login queued behind busy workers would be starved by dashboard polling
+        int threads = Math.max(poolSize, admissionController.getCapacity());
+        System.out.println("Handling requests on " + threads + " pooled threads");
+        return Executors.newFixedThreadPool(threads, threadFactory);
     }
     
     /*
     Function: handleImageFile
     @params:
     exchange: HTTP exchange object
-    Description: Serves image files from the images directory
+    Description: Serves image files from the images directory. A leading size
+    segment, as in /images/thumb/dogs/Charlie_1.jpg, serves a scaled copy
+    (thumb, medium or full)
     */
     private void handleImageFile(HttpExchange exchange) throws IOException {
-        String path = exchange.getRequestURI().getPath();
+        String path = exchange.getRequestURI().getPath().substring(8);
         
-        File file = new File("images" + path.substring(7));
-        if (file.exists() && file.isFile()) {
-            String contentType = getContentType(path);
-            exchange.getResponseHeaders().set("Content-Type", contentType);
-            exchange.getResponseHeaders().set("Cache-Control", "public, max-age=3600");
-            
-            FileInputStream fis = new FileInputStream(file);
-            exchange.sendResponseHeaders(200, file.length());
-            OutputStream os = exchange.getResponseBody();
-            
-            byte[] buffer = new byte[1024];
-            int bytesRead;
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                os.write(buffer, 0, bytesRead);
-            }
-            
-            fis.close();
-            os.close();
-        } else {
+        int slash = path.indexOf('/');
+        ImageVariants.Size size = slash > 0 ? ImageVariants.Size.fromPath(path.substring(0, slash)) : null;
+        if (size != null) {
+            path = path.substring(slash + 1);
+        }
+        
+        Path file = imageAssets.resolve(path);
+        if (file == null || !Files.isRegularFile(file)) {
             exchange.sendResponseHeaders(404, 0);
             exchange.getResponseBody().close();
+            return;
+        }
+        
+        Path variant = size != null && imageVariants != null ? imageVariants.variant(file, size) : file;
+        if (variant.equals(file)) {
+            sendAsset(exchange, imageAssets, file, "public, max-age=3600");
+        } else {
+            sendAsset(exchange, variantAssets, variant, IMAGE_VARIANT_CACHE_CONTROL);
         }
     }
     
@@ -138,28 +432,180 @@ public class WebServer {
             path = "/index.html";
         }
         
-        File file = new File("web" + path);
-        if (file.exists() && file.isFile()) {
-            String contentType = getContentType(path);
-            exchange.getResponseHeaders().set("Content-Type", contentType);
-            
-            FileInputStream fis = new FileInputStream(file);
-            exchange.sendResponseHeaders(200, file.length());
-            OutputStream os = exchange.getResponseBody();
-            
-            byte[] buffer = new byte[1024];
-            int bytesRead;
-            while ((bytesRead = fis.read(buffer)) != -1) {
-                os.write(buffer, 0, bytesRead);
-            }
-            
-            fis.close();
-            os.close();
+        Path file = webAssets.resolve(path);
+        if (file != null && Files.isRegularFile(file)) {
+            sendAsset(exchange, webAssets, file, "no-cache");
         } else {
             send404(exchange);
         }
     }
-
+    
+    /*
+    Function: sendAsset
+    @params:
+    exchange: HTTP exchange object
+    assets: cache the file belongs to
+    file: file to send
+    cacheControl: Cache-Control header for the response
+    Description: Sends a file from memory in the best encoding the client accepts,
+    answering 304 if the client already has it and honouring a single byte range.
+    Files the cache does not hold are streamed from disk
+    */
+    private void sendAsset(HttpExchange exchange, StaticAssetCache assets, Path file,
+                           String cacheControl) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", getContentType(file.toString()));
+        exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+        exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+        
+        StaticAssetCache.Asset asset = assets.get(file);
+        if (asset == null) {
+            sendFile(exchange, file);
+            return;
+        }
+        
+        // Ranges refer to the file as stored, so a range request gets the uncompressed variant
+        boolean ranged = exchange.getRequestHeaders().containsKey("Range");
+        StaticAssetCache.Variant variant = asset.select(
+            ranged ? null : exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (variant.getEncoding() != null) {
+            exchange.getResponseHeaders().set("Content-Encoding", variant.getEncoding());
+        }
+        if (notModified(exchange, variant.getEtag())) {
+            return;
+        }
+        
+        byte[] body = variant.getBody();
+        long[] range = requestedRange(exchange, variant.getEtag(), body.length);
+        if (range != null && range.length == 0) {
+            sendRangeNotSatisfiable(exchange, body.length);
+            return;
+        }
+        int start = range != null ? (int) range[0] : 0;
+        int count = range != null ? (int) (range[1] - range[0] + 1) : body.length;
+        if (range != null) {
+            exchange.getResponseHeaders().set("Content-Range",
+                "bytes " + range[0] + "-" + range[1] + "/" + body.length);
+        }
+        exchange.sendResponseHeaders(range != null ? 206 : 200, count > 0 ? count : -1);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body, start, count);
+        }
+    }
+    
+    /*
+    Function: sendFile
+    @params:
+    exchange: HTTP exchange object
+    file: file to send
+    Description: Streams a file, or the requested range of it, from disk with
+    FileChannel.transferTo rather than copying it through a small heap buffer
+    */
+    private void sendFile(HttpExchange exchange, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            String etag = StaticAssetCache.etag(file);
+            if (notModified(exchange, etag)) {
+                return;
+            }
+            
+            long length = channel.size();
+            long[] range = requestedRange(exchange, etag, length);
+            if (range != null && range.length == 0) {
+                sendRangeNotSatisfiable(exchange, length);
+                return;
+            }
+            long position = range != null ? range[0] : 0;
+            long remaining = range != null ? range[1] - range[0] + 1 : length;
+            if (range != null) {
+                exchange.getResponseHeaders().set("Content-Range",
+                    "bytes " + range[0] + "-" + range[1] + "/" + length);
+            }
+            exchange.sendResponseHeaders(range != null ? 206 : 200, remaining > 0 ? remaining : -1);
+            
+            try (OutputStream os = exchange.getResponseBody()) {
+                WritableByteChannel out = Channels.newChannel(os);
+                while (remaining > 0) {
+                    long sent = channel.transferTo(position, remaining, out);
+                    if (sent <= 0) {
+                        // The file was truncated while being sent
+                        break;
+                    }
+                    position += sent;
+                    remaining -= sent;
+                }
+            }
+        }
+    }
+    
+    /*
+    Function: requestedRange
+    @params:
+    exchange: HTTP exchange object
+    etag: entity tag of the representation being sent
+    length: its length in bytes
+    Description: Returns the first and last byte of the range the client asked for,
+    an empty array if that range lies beyond the end, or null to send everything:
+    no Range header, an If-Range that no longer matches, a malformed header, or
+    several ranges at once
+    */
+    private long[] requestedRange(HttpExchange exchange, String etag, long length) {
+        String header = exchange.getRequestHeaders().getFirst("Range");
+        if (header == null || !header.startsWith("bytes=")) {
+            return null;
+        }
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        if (ifRange != null && !ifRange.trim().equals(etag)) {
+            return null;
+        }
+        
+        String spec = header.substring(6).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0 || spec.contains(",")) {
+            return null;
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // bytes=-N is the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return new long[0];
+                }
+                start = Math.max(0, length - suffix);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                if (end < start) {
+                    return null;
+                }
+                end = Math.min(end, length - 1);
+            }
+            return start < length ? new long[] {start, end} : new long[0];
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    
+    private void sendRangeNotSatisfiable(HttpExchange exchange, long length) throws IOException {
+        exchange.getResponseHeaders().set("Content-Range", "bytes */" + length);
+        exchange.sendResponseHeaders(416, -1);
+        exchange.close();
+    }
+    
+    private void closeAssetCache(StaticAssetCache assets) {
+        if (assets != null) {
+            try {
+                assets.close();
+            } catch (IOException e) {
+                System.err.println("Error closing asset cache: " + e.getMessage());
+            }
+        }
+    }
+    
     /*
     Function: handleUserFullName
     @params:
@@ -199,6 +645,7 @@ public class WebServer {
             }
             
             targetUser.setFullName(fullName.trim());
+            dataManager.markUserChanged(username);
             dataManager.saveAll();
             
             System.out.println(String.format("User full name updated: %s -> %s", username, fullName));
@@ -244,6 +691,7 @@ public class WebServer {
         String sessionId = getSessionFromCookie(exchange);
         if (sessionId != null) {
             authSystem.logout(sessionId);
+            eventBroadcaster.disconnect(sessionId);
         }
         
         exchange.getResponseHeaders().add("Set-Cookie", 
@@ -291,11 +739,13 @@ public class WebServer {
         
         if (session != null) {
             User user = session.getUser();
-            String userJson = String.format(
-                "{\"username\": \"%s\", \"fullName\": \"%s\", \"role\": \"%s\"}",
-                user.getUsername(), user.getFullName(), user.getRole()
-            );
-            sendJsonResponse(exchange, 200, userJson);
+            sendJsonResponse(exchange, 200, JsonWriter.toBytes(json -> {
+                json.beginObject();
+                json.name("username").value(user.getUsername());
+                json.name("fullName").value(user.getFullName());
+                json.name("role").value(user.getRole());
+                json.endObject();
+            }));
         } else {
             sendJsonResponse(exchange, 401, "{\"error\": \"Not authenticated\"}");
         }
@@ -322,23 +772,20 @@ public class WebServer {
                 return;
             }
             
-            List<User> users = authSystem.getAllUsers(session.getUser());
-            StringBuilder json = new StringBuilder();
-            json.append("{\"users\": [");
-            
-            for (int i = 0; i < users.size(); i++) {
-                User user = users.get(i);
-                json.append("{");
-                json.append("\"username\": \"").append(user.getUsername()).append("\",");
-                json.append("\"fullName\": \"").append(user.getFullName()).append("\",");
-                json.append("\"role\": \"").append(user.getRole()).append("\",");
-                json.append("\"active\": ").append(user.isActive());
-                json.append("}");
-                if (i < users.size() - 1) json.append(",");
+            if (notModified(exchange, etag("users", dataManager.getUsersVersion()))) {
+                return;
             }
             
-            json.append("]}");
-            sendJsonResponse(exchange, 200, json.toString());
+            List<User> users = authSystem.getAllUsers(session.getUser());
+            sendJsonStream(exchange, 200, json -> {
+                json.beginObject();
+                json.name("users").beginArray();
+                for (User user : users) {
+                    JsonCodecs.USER_INFO.write(json, user.toUserInfo());
+                }
+                json.endArray();
+                json.endObject();
+            });
             
         } else if ("POST".equals(exchange.getRequestMethod())) {
             if (!authSystem.hasPermission(session.getUser(), UserRole.ADMIN)) {
@@ -552,24 +999,20 @@ public class WebServer {
         }
         
         if ("GET".equals(exchange.getRequestMethod())) {
-            List<AuthenticationSystem.SessionInfo> sessions = authSystem.getActiveSessions(session.getUser());
-            StringBuilder json = new StringBuilder();
-            json.append("{\"sessions\": [");
-            
-            for (int i = 0; i < sessions.size(); i++) {
-                AuthenticationSystem.SessionInfo sessionInfo = sessions.get(i);
-                json.append("{");
-                json.append("\"sessionId\": \"").append(sessionInfo.getSessionId()).append("\",");
-                json.append("\"username\": \"").append(sessionInfo.getUsername()).append("\",");
-                json.append("\"fullName\": \"").append(sessionInfo.getFullName()).append("\",");
-                json.append("\"createdTime\": ").append(sessionInfo.getCreatedTime()).append(",");
-                json.append("\"lastAccess\": ").append(sessionInfo.getLastAccess());
-                json.append("}");
-                if (i < sessions.size() - 1) json.append(",");
+            if (notModified(exchange, etag("sessions", authSystem.getSessionsTag()))) {
+                return;
             }
             
-            json.append("]}");
-            sendJsonResponse(exchange, 200, json.toString());
+            List<AuthenticationSystem.SessionInfo> sessions = authSystem.getActiveSessions(session.getUser());
+            sendJsonStream(exchange, 200, json -> {
+                json.beginObject();
+                json.name("sessions").beginArray();
+                for (AuthenticationSystem.SessionInfo sessionInfo : sessions) {
+                    JsonCodecs.SESSION_INFO.write(json, sessionInfo);
+                }
+                json.endArray();
+                json.endObject();
+            });
         }
     }
     
@@ -589,17 +1032,23 @@ public class WebServer {
         }
         
         if ("GET".equals(exchange.getRequestMethod())) {
-            StringBuilder json = new StringBuilder();
-            json.append("{");
-            json.append("\"dogs\": ").append(serializeDogs()).append(",");
-            json.append("\"monkeys\": ").append(serializeMonkeys()).append(",");
-            json.append("\"cats\": ").append(serializeCats()).append(",");
-            json.append("\"birds\": ").append(serializeBirds()).append(",");
-            json.append("\"rabbits\": ").append(serializeRabbits()).append(",");
-            json.append("\"stats\": ").append(getStatsJson());
-            json.append("}");
-            
-            sendJsonResponse(exchange, 200, json.toString());
+            // ?since=<version> returns only the animals changed after that version, if the change log still has them
+            String since = getQueryParam(exchange.getRequestURI().getQuery(), "since");
+            if (since != null) {
+                byte[] delta = getAnimalsDelta(parseSyncToken(since));
+                if (delta != null) {
+                    sendJsonResponse(exchange, 200, delta);
+                    return;
+                }
+            }
+            
+            // Checked before the body is built, so an unchanged roster costs nothing to answer
+            if (notModified(exchange, etag("animals", dataManager.getDataVersion()))) {
+                return;
+            }
+            VersionedBody animals = getAnimalsBody();
+            exchange.getResponseHeaders().set("ETag", etag("animals", animals.version));
+            sendJsonResponse(exchange, 200, animals.body, animals.gzipBody);
             
         } else if ("POST".equals(exchange.getRequestMethod())) {
             if (!authSystem.hasPermission(session.getUser(), UserRole.STAFF)) {
@@ -645,8 +1094,8 @@ public class WebServer {
             String animalName = getQueryParam(query, "name");
             
             if (animalName != null) {
-                boolean success = dataManager.removeAnimal(animalName);
-                animalService.refreshFromDatabase();
+                // Drops it from the type list and availability index too, without rebuilding either
+                boolean success = animalService.deleteAnimal(animalName, session.getUser().getUsername());
                 
                 if (success) {
                     sendJsonResponse(exchange, 200, "{\"success\": true, \"message\": \"Animal deleted successfully\"}");
@@ -679,26 +1128,56 @@ public class WebServer {
             return;
         }
         
-        List<Activity> activities = dataManager.getActivities();
-        StringBuilder json = new StringBuilder();
-        json.append("{\"activities\": [");
+        // ?since=<cursor> returns only what was appended after the cursor, if the change log still has it
+        String since = getQueryParam(exchange.getRequestURI().getQuery(), "since");
+        if (since != null) {
+            long cursor = parseSyncToken(since);
+            List<Activity> appended = cursor >= 0 ? dataManager.getActivitiesAfter(cursor) : null;
+            if (appended != null) {
+                sendJsonStream(exchange, 200, json -> {
+                    beginActivities(json, syncToken(cursor + appended.size()), false);
+                    for (Activity activity : appended) {
+                        JsonCodecs.ACTIVITY.write(json, activity);
+                    }
+                    json.endArray().endObject();
+                });
+                return;
+            }
+        }
         
-        for (int i = 0; i < activities.size(); i++) {
-            Activity activity = activities.get(i);
-            json.append("{");
-            json.append("\"animalName\": \"").append(activity.getAnimalName()).append("\",");
-            json.append("\"animalType\": \"").append(activity.getAnimalType()).append("\",");
-            json.append("\"activityType\": \"").append(activity.getActivityType()).append("\",");
-            json.append("\"description\": \"").append(activity.getDescription()).append("\",");
-            json.append("\"location\": \"").append(activity.getLocation()).append("\",");
-            json.append("\"performedBy\": \"").append(activity.getPerformedBy()).append("\",");
-            json.append("\"timestamp\": \"").append(activity.getTimestamp()).append("\"");
-            json.append("}");
-            if (i < activities.size() - 1) json.append(",");
+        if (notModified(exchange, etag("activities", dataManager.getActivitiesVersion()))) {
+            return;
         }
         
-        json.append("]}");
-        sendJsonResponse(exchange, 200, json.toString());
+        // Read before the history, so anything appended meanwhile is sent again rather than missed
+        long sequence = dataManager.getActivitySequence();
+        sendJsonStream(exchange, 200, json -> {
+            beginActivities(json, syncToken(sequence), true);
+            // Written as the log is read, so the history is never held in memory
+            dataManager.forEachActivity(activity -> {
+                try {
+                    JsonCodecs.ACTIVITY.write(json, activity);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            json.endArray().endObject();
+        });
+    }
+    
+    /*
+    Function: beginActivities
+    @params:
+    json: writer for the response body
+    cursor: sync token for the client's next ?since= request
+    full: whether this is the whole history or only what was appended
+    Description: Opens the /api/activities body up to the start of its activities array
+    */
+    private void beginActivities(JsonWriter json, String cursor, boolean full) throws IOException {
+        json.beginObject();
+        json.name("cursor").value(cursor);
+        json.name("full").value(full);
+        json.name("activities").beginArray();
     }
     
     /*
@@ -828,12 +1307,140 @@ public class WebServer {
     Description: Sends a JSON response with proper headers
     */
     private void sendJsonResponse(HttpExchange exchange, int status, String json) throws IOException {
-        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        sendJsonResponse(exchange, status, json.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /*
+    Function: sendJsonResponse
+    @params:
+    exchange: HTTP exchange object
+    status: HTTP status code
+    body: UTF-8 encoded JSON body
+    Description: Sends a JSON body that is already encoded, e.g. a cached response
+    */
+    private void sendJsonResponse(HttpExchange exchange, int status, byte[] body) throws IOException {
+        sendJsonResponse(exchange, status, body, null);
+    }
+    
+    /*
+    Function: sendJsonResponse
+    @params:
+    exchange: HTTP exchange object
+    status: HTTP status code
+    body: UTF-8 encoded JSON body
+    gzipBody: the body already gzipped, or null to compress it here if needed
+    Description: Sends a JSON body, compressed if it is large enough and the client
+    accepts gzip or deflate
+    */
+    private void sendJsonResponse(HttpExchange exchange, int status, byte[] body,
+                                  byte[] gzipBody) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
         exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-        exchange.sendResponseHeaders(status, json.getBytes().length);
+        
+        if (compressor.worthCompressing(body.length)) {
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+            String encoding = compressor.choose(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+            if (encoding != null) {
+                body = "gzip".equals(encoding) && gzipBody != null ? gzipBody : compressor.compress(body, encoding);
+                exchange.getResponseHeaders().set("Content-Encoding", encoding);
+            }
+        }
+        exchange.sendResponseHeaders(status, body.length);
         
         try (OutputStream os = exchange.getResponseBody()) {
-            os.write(json.getBytes());
+            os.write(body);
+        }
+    }
+    
+    /*
+    Function: sendJsonStream
+    @params:
+    exchange: HTTP exchange object
+    status: HTTP status code
+    body: writes the response body
+    Description: Sends JSON as it is produced, with chunked transfer encoding, so
+    memory per request stays the same however large the body is. Compressed like
+    sendJsonResponse once the body reaches the size threshold
+    */
+    private void sendJsonStream(HttpExchange exchange, int status, JsonWriter.Document body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+        exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+        
+        String encoding = compressor.choose(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+        OutputStream out;
+        if (encoding != null) {
+            out = new CompressibleResponse(exchange, status, encoding);
+        } else {
+            exchange.sendResponseHeaders(status, 0);
+            out = exchange.getResponseBody();
+        }
+        
+        try (JsonWriter json = new JsonWriter(out)) {
+            body.write(json);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    /*
+    Class: CompressibleResponse
+    Description: Response body that holds back its first bytes until it knows
+    whether the body reaches the compression threshold. A short body is sent
+    as it is with a Content-Length; a longer one is compressed and chunked
+    */
+    private final class CompressibleResponse extends OutputStream {
+        private final HttpExchange exchange;
+        private final int status;
+        private final String encoding;
+        private final byte[] pending = new byte[compressor.getMinSize()];
+        private int count;
+        private OutputStream target;
+        
+        CompressibleResponse(HttpExchange exchange, int status, String encoding) {
+            this.exchange = exchange;
+            this.status = status;
+            this.encoding = encoding;
+        }
+        
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (target == null) {
+                if (count + len < pending.length) {
+                    System.arraycopy(b, off, pending, count, len);
+                    count += len;
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Encoding", encoding);
+                exchange.sendResponseHeaders(status, 0);
+                target = compressor.wrap(exchange.getResponseBody(), encoding);
+                target.write(pending, 0, count);
+            }
+            target.write(b, off, len);
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            if (target != null) {
+                target.flush();
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            if (target != null) {
+                target.close();
+                return;
+            }
+            exchange.sendResponseHeaders(status, count > 0 ? count : -1);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(pending, 0, count);
+            }
         }
     }
     
@@ -884,25 +1491,32 @@ public class WebServer {
         }
         
         try {
-            RescueAnimal animal = dataManager.findAnimalByName(originalName);
+            // Reservations change only through the animal's flag, so an edit cannot undo one that raced with it
+            String reserved = params.get("reserved");
+            RescueAnimal animal = animalService.updateAnimal(originalName, newName, edited -> {
+                edited.setGender(params.get("gender"));
+                edited.setAge(params.get("age"));
+                edited.setWeight(params.get("weight"));
+                edited.setTrainingStatus(params.get("trainingStatus"));
+                if (reserved != null) {
+                    if (Boolean.parseBoolean(reserved)) {
+                        edited.tryReserve();
+                    } else {
+                        edited.tryCancelReservation();
+                    }
+                }
+            });
+            // Gone, or the new name belongs to another animal
             if (animal == null) {
                 return false;
             }
             
-            animal.setName(newName);
-            animal.setGender(params.get("gender"));
-            animal.setAge(params.get("age"));
-            animal.setWeight(params.get("weight"));
-            animal.setTrainingStatus(params.get("trainingStatus"));
-            animal.setReserved(Boolean.parseBoolean(params.getOrDefault("reserved", "false")));
-            
             String location = params.get("location");
             if (location != null && !location.trim().isEmpty()) {
                 monitoringSystem.updateAnimalLocation(newName, location, updatedBy);
             }
             
             dataManager.saveAll();
-            animalService.refreshFromDatabase();
             
             monitoringSystem.logActivity(newName, animal.getAnimalType(), "UPDATE", 
                                        "Animal information updated", 
@@ -918,169 +1532,234 @@ public class WebServer {
     }
     
     /*
-    Function: serializeDogs
-    @params: none
-    Description: Converts dog list to JSON string
+    Function: etag
+    @params:
+    store: name of the store the response is built from
+    version: store version read before building the response
+    Description: Returns a strong entity tag for a response built from the given store version
     */
-    private String serializeDogs() {
-        StringBuilder json = new StringBuilder("[");
-        List<Dog> dogs = animalService.getDogList();
-        for (int i = 0; i < dogs.size(); i++) {
-            Dog dog = dogs.get(i);
-            json.append("{");
-            json.append("\"name\": \"").append(dog.getName()).append("\",");
-            json.append("\"breed\": \"").append(dog.getBreed()).append("\",");
-            json.append("\"gender\": \"").append(dog.getGender()).append("\",");
-            json.append("\"age\": \"").append(dog.getAge()).append("\",");
-            json.append("\"weight\": \"").append(dog.getWeight()).append("\",");
-            json.append("\"trainingStatus\": \"").append(dog.getTrainingStatus()).append("\",");
-            json.append("\"reserved\": ").append(dog.getReserved()).append(",");
-            json.append("\"location\": \"").append(monitoringSystem.getAnimalLocation(dog.getName())).append("\"");
-            json.append("}");
-            if (i < dogs.size() - 1) json.append(",");
-        }
-        json.append("]");
-        return json.toString();
+    private String etag(String store, long version) {
+        return etag(store, Long.toString(version));
+    }
+    
+    private String etag(String store, String version) {
+        return "\"" + store + "-" + etagEpoch + "-" + version + "\"";
     }
     
     /*
-    Function: serializeMonkeys
-    @params: none
-    Description: Converts monkey list to JSON string
+    Function: notModified
+    @params:
+    exchange: HTTP exchange object
+    etag: entity tag of the current representation
+    Description: Tags the response and, if the client's If-None-Match already names
+    this tag, answers 304 with no body. Revalidation is required unless the caller
+    has set its own Cache-Control. Returns true if the response has been sent
     */
-    private String serializeMonkeys() {
-        StringBuilder json = new StringBuilder("[");
-        List<Monkey> monkeys = animalService.getMonkeyList();
-        for (int i = 0; i < monkeys.size(); i++) {
-            Monkey monkey = monkeys.get(i);
-            json.append("{");
-            json.append("\"name\": \"").append(monkey.getName()).append("\",");
-            json.append("\"species\": \"").append(monkey.getSpecies()).append("\",");
-            json.append("\"gender\": \"").append(monkey.getGender()).append("\",");
-            json.append("\"age\": \"").append(monkey.getAge()).append("\",");
-            json.append("\"weight\": \"").append(monkey.getWeight()).append("\",");
-            json.append("\"trainingStatus\": \"").append(monkey.getTrainingStatus()).append("\",");
-            json.append("\"reserved\": ").append(monkey.getReserved()).append(",");
-            json.append("\"location\": \"").append(monitoringSystem.getAnimalLocation(monkey.getName())).append("\"");
-            json.append("}");
-            if (i < monkeys.size() - 1) json.append(",");
-        }
-        json.append("]");
-        return json.toString();
+    private boolean notModified(HttpExchange exchange, String etag) throws IOException {
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (!exchange.getResponseHeaders().containsKey("Cache-Control")) {
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        }
+        
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag) || tag.equals("*")) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return true;
+            }
+        }
+        return false;
     }
     
     /*
-    Function: serializeCats
+    Function: getAnimalsBody
     @params: none
-    Description: Converts cat list to JSON string
+    Description: Returns the GET /api/animals body for the current data version,
+    serializing it only when the data has changed since it was last built. The roster
+    comes from the data manager, the same store that versions it, so a body is never
+    cached under a version its animals do not match
     */
-    private String serializeCats() {
-        StringBuilder json = new StringBuilder("[");
-        List<Cat> cats = animalService.getCatList();
-        for (int i = 0; i < cats.size(); i++) {
-            Cat cat = cats.get(i);
-            json.append("{");
-            json.append("\"name\": \"").append(cat.getName()).append("\",");
-            json.append("\"breed\": \"").append(cat.getBreed()).append("\",");
-            json.append("\"gender\": \"").append(cat.getGender()).append("\",");
-            json.append("\"age\": \"").append(cat.getAge()).append("\",");
-            json.append("\"weight\": \"").append(cat.getWeight()).append("\",");
-            json.append("\"trainingStatus\": \"").append(cat.getTrainingStatus()).append("\",");
-            json.append("\"reserved\": ").append(cat.getReserved()).append(",");
-            json.append("\"location\": \"").append(monitoringSystem.getAnimalLocation(cat.getName())).append("\"");
-            json.append("}");
-            if (i < cats.size() - 1) json.append(",");
-        }
-        json.append("]");
-        return json.toString();
+    private VersionedBody getAnimalsBody() {
+        long version = dataManager.getDataVersion();
+        VersionedBody cached = animalsBody;
+        if (cached != null && cached.version == version) {
+            return cached;
+        }
+        
+        List<RescueAnimal> animals = dataManager.getAnimals();
+        Map<String, List<RescueAnimal>> byType = new LinkedHashMap<>();
+        for (String type : new String[] {"dogs", "monkeys", "cats", "birds", "rabbits"}) {
+            byType.put(type, new ArrayList<>());
+        }
+        for (RescueAnimal animal : animals) {
+            List<RescueAnimal> ofType = byType.get(animal.getAnimalType().toLowerCase() + "s");
+            if (ofType != null) {
+                ofType.add(animal);
+            }
+        }
+        
+        byte[] body;
+        try {
+            body = JsonWriter.toBytes(json -> {
+                json.beginObject();
+                json.name("version").value(syncToken(version));
+                json.name("full").value(true);
+                for (Map.Entry<String, List<RescueAnimal>> entry : byType.entrySet()) {
+                    writeAnimals(json, entry.getKey(), entry.getValue());
+                }
+                writeStats(json, animals);
+                json.endObject();
+            });
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new UncheckedIOException(e);
+        }
+        
+        // Built after reading the version, so a concurrent change leaves this entry already out of date
+        byte[] gzipBody = null;
+        if (compressor.worthCompressing(body.length)) {
+            try {
+                gzipBody = compressor.compress(body, "gzip");
+            } catch (IOException e) {
+                System.err.println("Error compressing animals body: " + e.getMessage());
+            }
+        }
+        VersionedBody built = new VersionedBody(version, body, gzipBody);
+        animalsBody = built;
+        return built;
     }
     
     /*
-    Function: serializeBirds
-    @params: none
-    Description: Converts bird list to JSON string
+    Function: getAnimalsDelta
+    @params:
+    since: data version the client last synced to, or -1 if it sent none this server issued
+    Description: Returns the animals added or changed since that version, the names
+    of those deleted, and current stats. Returns null when the change log no longer
+    reaches back that far, so the caller sends the full roster instead
     */
-    private String serializeBirds() {
-        StringBuilder json = new StringBuilder("[");
-        List<Bird> birds = animalService.getBirdList();
-        for (int i = 0; i < birds.size(); i++) {
-            Bird bird = birds.get(i);
-            json.append("{");
-            json.append("\"name\": \"").append(bird.getName()).append("\",");
-            json.append("\"species\": \"").append(bird.getSpecies()).append("\",");
-            json.append("\"gender\": \"").append(bird.getGender()).append("\",");
-            json.append("\"age\": \"").append(bird.getAge()).append("\",");
-            json.append("\"weight\": \"").append(bird.getWeight()).append("\",");
-            json.append("\"trainingStatus\": \"").append(bird.getTrainingStatus()).append("\",");
-            json.append("\"reserved\": ").append(bird.getReserved()).append(",");
-            json.append("\"location\": \"").append(monitoringSystem.getAnimalLocation(bird.getName())).append("\"");
-            json.append("}");
-            if (i < birds.size() - 1) json.append(",");
-        }
-        json.append("]");
-        return json.toString();
+    private byte[] getAnimalsDelta(long since) throws IOException {
+        if (since < 0) {
+            return null;
+        }
+        long version = dataManager.getDataVersion();
+        Set<String> names = dataManager.getAnimalChangesSince(since);
+        if (names == null) {
+            return null;
+        }
+        
+        List<RescueAnimal> changed = new ArrayList<>();
+        List<String> deleted = new ArrayList<>();
+        for (String name : names) {
+            RescueAnimal animal = animalService.findAnimalByName(name);
+            if (animal != null) {
+                changed.add(animal);
+            } else {
+                deleted.add(name);
+            }
+        }
+        
+        // Changes made after the version was read may be included and are sent again next time
+        return JsonWriter.toBytes(json -> {
+            json.beginObject();
+            json.name("version").value(syncToken(version));
+            json.name("full").value(false);
+            json.name("changed").beginArray();
+            for (RescueAnimal animal : changed) {
+                json.beginObject();
+                json.name("type").value(animal.getAnimalType().toLowerCase() + "s");
+                json.name("animal");
+                animalCodec.write(json, animal);
+                json.endObject();
+            }
+            json.endArray();
+            json.name("deleted").beginArray();
+            for (String name : deleted) {
+                json.value(name);
+            }
+            json.endArray();
+            writeStats(json, dataManager.getAnimals());
+            json.endObject();
+        });
     }
     
     /*
-    Function: serializeRabbits
-    @params: none
-    Description: Converts rabbit list to JSON string
+    Function: syncToken
+    @params:
+    position: data version or activity sequence number
+    Description: Returns a sync position for clients; it names this server run, since
+    positions start again from zero after a restart
     */
-    private String serializeRabbits() {
-        StringBuilder json = new StringBuilder("[");
-        List<Rabbit> rabbits = animalService.getRabbitList();
-        for (int i = 0; i < rabbits.size(); i++) {
-            Rabbit rabbit = rabbits.get(i);
-            json.append("{");
-            json.append("\"name\": \"").append(rabbit.getName()).append("\",");
-            json.append("\"breed\": \"").append(rabbit.getBreed()).append("\",");
-            json.append("\"gender\": \"").append(rabbit.getGender()).append("\",");
-            json.append("\"age\": \"").append(rabbit.getAge()).append("\",");
-            json.append("\"weight\": \"").append(rabbit.getWeight()).append("\",");
-            json.append("\"trainingStatus\": \"").append(rabbit.getTrainingStatus()).append("\",");
-            json.append("\"reserved\": ").append(rabbit.getReserved()).append(",");
-            json.append("\"location\": \"").append(monitoringSystem.getAnimalLocation(rabbit.getName())).append("\"");
-            json.append("}");
-            if (i < rabbits.size() - 1) json.append(",");
-        }
-        json.append("]");
-        return json.toString();
+    private String syncToken(long position) {
+        return etagEpoch + "-" + position;
     }
     
     /*
-    Function: getStatsJson
-    @params: none
-    Description: Returns animal statistics as JSON string
+    Function: parseSyncToken
+    @params:
+    token: sync token sent back by a client
+    Description: Returns the position in the token, or -1 if it is malformed or
+    was issued by an earlier run of the server
     */
-    private String getStatsJson() {
-        int total = animalService.getTotalAnimals();
-        int available = animalService.getAvailableAnimals();
-        int reserved = 0;
-        int training = 0;
-        
-        for (Dog dog : animalService.getDogList()) {
-            if (dog.getReserved()) reserved++;
-            else if (!"in service".equalsIgnoreCase(dog.getTrainingStatus())) training++;
-        }
-        for (Monkey monkey : animalService.getMonkeyList()) {
-            if (monkey.getReserved()) reserved++;
-            else if (!"in service".equalsIgnoreCase(monkey.getTrainingStatus())) training++;
+    private long parseSyncToken(String token) {
+        int separator = token.lastIndexOf('-');
+        if (separator < 0 || !token.substring(0, separator).equals(etagEpoch)) {
+            return -1;
         }
-        for (Cat cat : animalService.getCatList()) {
-            if (cat.getReserved()) reserved++;
-            else if (!"in service".equalsIgnoreCase(cat.getTrainingStatus())) training++;
+        try {
+            return Long.parseLong(token.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
         }
-        for (Bird bird : animalService.getBirdList()) {
-            if (bird.getReserved()) reserved++;
-            else if (!"in service".equalsIgnoreCase(bird.getTrainingStatus())) training++;
+    }
+    
+    /*
+    Function: writeAnimals
+    @params:
+    json: writer for the response body
+    name: member name for the list, e.g. "dogs"
+    animals: animals of one type
+    Description: Writes one type's animals as a named JSON array
+    */
+    private void writeAnimals(JsonWriter json, String name, List<? extends RescueAnimal> animals) throws IOException {
+        json.name(name).beginArray();
+        for (RescueAnimal animal : animals) {
+            animalCodec.write(json, animal);
         }
-        for (Rabbit rabbit : animalService.getRabbitList()) {
-            if (rabbit.getReserved()) reserved++;
-            else if (!"in service".equalsIgnoreCase(rabbit.getTrainingStatus())) training++;
+        json.endArray();
+    }
+    
+    /*
+    Function: writeStats
+    @params:
+    json: writer for the response body
+    animals: every animal
+    Description: Writes animal statistics as the "stats" member
+    */
+    private void writeStats(JsonWriter json, List<RescueAnimal> animals) throws IOException {
+        int available = 0;
+        int reserved = 0;
+        int training = 0;
+        
+        for (RescueAnimal animal : animals) {
+            if (animal.getReserved()) reserved++;
+            else if ("in service".equalsIgnoreCase(animal.getTrainingStatus())) available++;
+            else training++;
         }
         
-        return String.format("{\"total\": %d, \"available\": %d, \"reserved\": %d, \"training\": %d}",
-                           total, available, reserved, training);
+        json.name("stats").beginObject();
+        json.name("total").value(animals.size());
+        json.name("available").value(available);
+        json.name("reserved").value(reserved);
+        json.name("training").value(training);
+        json.endObject();
     }
     
     /*
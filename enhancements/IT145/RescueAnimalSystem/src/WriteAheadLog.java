@@ -0,0 +1,196 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Write-ahead log for user, animal and location mutations.
+ * Every mutation is appended as one line: sequence number, operation, payload,
+ * sealed with a CRC32C so damaged records are detected on replay.
+ * Snapshots record the sequence number they cover, so startup loads the
+ * snapshots and replays only the records written after them.
+ */
+public class WriteAheadLog implements Closeable {
+
+    public enum Operation {
+        USER_PUT,
+        USER_DELETE,
+        ANIMAL_PUT,
+        ANIMAL_DELETE,
+        LOCATION_PUT,
+        LOCATION_DELETE
+    }
+
+    /**
+     * A single replayed log record
+     */
+    public static class Record {
+        private final long sequence;
+        private final Operation operation;
+        private final String payload;
+
+        public Record(long sequence, Operation operation, String payload) {
+            this.sequence = sequence;
+            this.operation = operation;
+            this.payload = payload;
+        }
+
+        public long getSequence() { return sequence; }
+        public Operation getOperation() { return operation; }
+        public String getPayload() { return payload; }
+    }
+
+    /**
+     * Receives records during replay
+     */
+    public interface RecordHandler {
+        void apply(Record record);
+    }
+
+    private final Path path;
+    private final Path rolledPath;
+    private FileChannel channel;
+    private long lastSequence;
+    private boolean unsynced = false;
+
+    /**
+     * Open the log for appending
+     * lastSequence is the highest sequence number already used by the log or any snapshot
+     */
+    public WriteAheadLog(Path path, long lastSequence) throws IOException {
+        this.path = path;
+        this.rolledPath = path.resolveSibling(path.getFileName() + ".1");
+        this.lastSequence = lastSequence;
+        this.channel = openForAppend(path);
+    }
+
+    /**
+     * Replay the rolled-over log (if a compaction was interrupted) and then the live log
+     * Returns the highest sequence number seen
+     */
+    public static long replay(Path path, RecordHandler handler) throws IOException {
+        Path rolled = path.resolveSibling(path.getFileName() + ".1");
+        long highest = replayFile(rolled, handler, 0);
+        return replayFile(path, handler, highest);
+    }
+
+    /**
+     * Append a mutation and return its sequence number
+     * The record reaches the device on the next sync()
+     */
+    public synchronized long append(Operation operation, String payload) throws IOException {
+        long sequence = ++lastSequence;
+        String line = RecordChecksum.seal(sequence + "|" + operation.name() + "|" + payload) + "\n";
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        unsynced = true;
+        return sequence;
+    }
+
+    /**
+     * Force appended records to the device
+     * Returns false if there was nothing to force
+     */
+    public synchronized boolean sync() throws IOException {
+        if (unsynced && channel.isOpen()) {
+            channel.force(false);
+            unsynced = false;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    public synchronized long size() throws IOException {
+        return channel.size();
+    }
+
+    /**
+     * Start a fresh log file
+     * Records written so far move to the rolled file until the snapshots covering
+     * them are on disk; then discardRolled() removes it. Returns false, and keeps
+     * appending to the current file, while an earlier rolled file is still waiting
+     * for its snapshots, since moving over it would lose its records
+     */
+    public synchronized boolean rollover() throws IOException {
+        if (Files.exists(rolledPath)) {
+            return false;
+        }
+        sync();
+        channel.close();
+        Files.move(path, rolledPath);
+        channel = openForAppend(path);
+        return true;
+    }
+
+    public void discardRolled() throws IOException {
+        Files.deleteIfExists(rolledPath);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            sync();
+            channel.close();
+        }
+    }
+
+    private static FileChannel openForAppend(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE,
+                                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static long replayFile(Path file, RecordHandler handler, long highest) throws IOException {
+        if (!Files.exists(file)) {
+            return highest;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            String next = reader.readLine();
+            boolean sawSealed = false;
+            while ((line = next) != null) {
+                next = reader.readLine();
+                // Records from before checksums come first; after a sealed one, a bare line is damage
+                boolean sealed = RecordChecksum.isSealed(line);
+                String record = sealed ? RecordChecksum.unseal(line) : (sawSealed ? null : line);
+                sawSealed |= sealed;
+                if (record == null) {
+                    if (next == null) {
+                        // Torn final record from a crash mid-append
+                        continue;
+                    }
+                    // Damage in the middle of the log; keep the record for inspection
+                    RecordChecksum.quarantine(file, line);
+                    continue;
+                }
+                line = record;
+                int first = line.indexOf('|');
+                int second = first < 0 ? -1 : line.indexOf('|', first + 1);
+                if (second < 0) {
+                    // Torn final record from a crash mid-append
+                    continue;
+                }
+                try {
+                    long sequence = Long.parseLong(line.substring(0, first));
+                    Operation operation = Operation.valueOf(line.substring(first + 1, second));
+                    handler.apply(new Record(sequence, operation, line.substring(second + 1)));
+                    highest = Math.max(highest, sequence);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Skipping unreadable log record: " + line);
+                }
+            }
+        }
+        return highest;
+    }
+}